@@ -0,0 +1,93 @@
+package hm.binkley.layers.jmh
+
+import hm.binkley.layers.rules.total
+import hm.binkley.layers.x.InMemoryLayers
+import hm.binkley.layers.x.XLayersSnapshot
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode.AverageTime
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit.MICROSECONDS
+
+/**
+ * Evaluation and editing costs of [InMemoryLayers] as the stack grows.
+ *
+ * "Cold" benchmarks read through a fresh, uncached [XLayersSnapshot] of the
+ * same layers, so they measure evaluating rules rather than the cache.
+ *
+ * The default grid runs in minutes.  Setup commits every layer for each
+ * benchmark and fork, so ask for large stacks explicitly, such as
+ * `-p layerCount=100000 -p keyCount=10000`.
+ */
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+open class InMemoryLayersBenchmark {
+    @Param("10", "1000")
+    var layerCount = 0
+
+    @Param("1", "100")
+    var keyCount = 0
+
+    private lateinit var layers: InMemoryLayers
+    private lateinit var key: String
+
+    @Setup
+    fun setUp() {
+        layers = InMemoryLayers()
+        layers.current.edit {
+            repeat(keyCount) {
+                this[keyFor(it)] = total(default = 0)
+            }
+        }
+        layers.commit()
+        repeat(layerCount - 1) {
+            layers.layers.last().edit {
+                this[keyFor(it)] = 1
+            }
+            layers.commit()
+        }
+
+        key = keyFor(keyCount / 2)
+    }
+
+    @Benchmark
+    fun asMapCold() = uncached().asMap()
+
+    @Benchmark
+    fun asMapCached() = layers.asMap()
+
+    @Benchmark
+    fun appliedValueForCold() = uncached().appliedValueFor<Int>(key)
+
+    @Benchmark
+    fun allValuesFor() = layers.allValuesFor<Int>(key)
+
+    @Benchmark
+    fun intValuesFor() = layers.intValuesFor(key)
+
+    /** Edits then replaces the scratch layer, keeping the stack size. */
+    @Benchmark
+    fun newLayer() = layers.apply {
+        layers.last().edit {
+            this[key] = 1
+        }
+        rollback()
+    }.sequence
+
+    private fun uncached() = layers.snapshot.let {
+        XLayersSnapshot(it.layerStack, it.contents, it.sequence)
+    }
+
+    private fun keyFor(n: Int) = "k${n % keyCount}"
+}
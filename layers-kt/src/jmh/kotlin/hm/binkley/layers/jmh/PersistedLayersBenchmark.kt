@@ -0,0 +1,121 @@
+package hm.binkley.layers.jmh
+
+import hm.binkley.layers.GitPersistence
+import hm.binkley.layers.PersistedLayers
+import hm.binkley.layers.Scripting
+import org.eclipse.jgit.api.Git
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode.AverageTime
+import org.openjdk.jmh.annotations.Mode.SingleShotTime
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.io.File
+import java.nio.file.Files.createTempDirectory
+import java.util.concurrent.TimeUnit.MILLISECONDS
+
+/**
+ * Evaluation, scripting and Git costs of [PersistedLayers] over a local
+ * bare repository.
+ *
+ * Setup seeds the repository with one Git commit of generated scripts,
+ * rather than one push per layer, so large stacks are practical.  Every
+ * [PersistedLayers] still evaluates each script on startup.
+ */
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+open class PersistedLayersBenchmark {
+    @Param("10", "100", "1000")
+    var layerCount = 0
+
+    @Param("1", "10", "100")
+    var keyCount = 0
+
+    private lateinit var baseDir: File
+    private lateinit var repository: String
+    private lateinit var scripting: Scripting
+    private lateinit var layers: PersistedLayers
+    private lateinit var key: String
+
+    @Setup
+    fun setUp() {
+        baseDir = createTempDirectory("layers-jmh").toFile()
+        repository = seedRepository().absolutePath
+        scripting = Scripting("kts")
+        layers = PersistedLayers(GitPersistence(repository), scripting)
+        key = keyFor(keyCount / 2)
+    }
+
+    @TearDown
+    fun tearDown() {
+        layers.close()
+        baseDir.deleteRecursively()
+    }
+
+    @Benchmark
+    fun asMap() = layers.asMap()
+
+    @Benchmark
+    fun appliedValueFor() = layers.appliedValueFor<Int>(key)
+
+    @Benchmark
+    fun allValuesFor() = layers.allValuesFor<Int>(key)
+
+    /** Evaluates a one-line script into the newest layer, skipping Git. */
+    @Benchmark
+    fun scriptEval() = layers.layers.last().edit {
+        execute("""layer["$key"] = 1""")
+    }
+
+    /** Evaluates, commits and pushes one more layer. */
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    @Measurement(iterations = 10)
+    fun newLayer() = layers.newLayer(
+        "Benchmark layer",
+        """layer["$key"] = 1""",
+        null
+    )
+
+    /** Clones the repository and re-evaluates every layer's script. */
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    @Measurement(iterations = 3)
+    fun startupRefresh() =
+        PersistedLayers(GitPersistence(repository), scripting).use {
+            it.layers.size
+        }
+
+    private fun seedRepository() = baseDir.resolve("layers.git").also {
+        Git.init().setBare(true).setDirectory(it).call().close()
+        val workDir = baseDir.resolve("seed")
+        Git.cloneRepository()
+            .setURI(it.absolutePath)
+            .setDirectory(workDir)
+            .call().use { git ->
+                workDir.resolve("0.kts").writeText(
+                    (0 until keyCount).joinToString("\n", postfix = "\n") {
+                        """layer["${keyFor(it)}"] = total(default=0)"""
+                    })
+                for (slot in 1 until layerCount)
+                    workDir.resolve("$slot.kts")
+                        .writeText("""layer["${keyFor(slot)}"] = 1""" + "\n")
+                git.add().addFilepattern(".").call()
+                git.commit().setMessage("Seed $layerCount layers").call()
+                git.push().call()
+            }
+    }
+
+    private fun keyFor(n: Int) = "k${n % keyCount}"
+}
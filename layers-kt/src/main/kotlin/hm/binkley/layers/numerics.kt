@@ -0,0 +1,63 @@
+package hm.binkley.layers
+
+/**
+ * An unboxed `Int` value.  Numeric rules read these through
+ * [RuleContext.myInts] without boxing each layer's value.
+ */
+class IntValue(val int: Int) : Value<Int>(null, null) {
+    override val value: Int
+        get() = int
+}
+
+/** An unboxed `Long` value; see [RuleContext.myLongs]. */
+class LongValue(val long: Long) : Value<Long>(null, null) {
+    override val value: Long
+        get() = long
+}
+
+/** An unboxed `Double` value; see [RuleContext.myDoubles]. */
+class DoubleValue(val double: Double) : Value<Double>(null, null) {
+    override val value: Double
+        get() = double
+}
+
+fun value(context: Int) = IntValue(context)
+
+fun value(context: Long) = LongValue(context)
+
+fun value(context: Double) = DoubleValue(context)
+
+/** Checks for a non-`null` value without boxing numeric values. */
+internal val Value<*>.isPresent
+    get() = when (this) {
+        is IntValue, is LongValue, is DoubleValue -> true
+        else -> null != value
+    }
+
+internal fun Value<*>.asInt() = when (this) {
+    is IntValue -> int
+    is LongValue -> long.toInt()
+    is DoubleValue -> double.toInt()
+    else -> (value as Number).toInt()
+}
+
+internal fun Value<*>.asLong() = when (this) {
+    is IntValue -> int.toLong()
+    is LongValue -> long
+    is DoubleValue -> double.toLong()
+    else -> (value as Number).toLong()
+}
+
+internal fun Value<*>.asDouble() = when (this) {
+    is IntValue -> int.toDouble()
+    is LongValue -> long.toDouble()
+    is DoubleValue -> double
+    else -> (value as Number).toDouble()
+}
+
+internal fun List<Value<*>>.toInts() = IntArray(size) { this[it].asInt() }
+
+internal fun List<Value<*>>.toLongs() = LongArray(size) { this[it].asLong() }
+
+internal fun List<Value<*>>.toDoubles() =
+    DoubleArray(size) { this[it].asDouble() }
@@ -25,5 +25,5 @@ fun bonus(otherKey: String, default: Int = 0) =
 
 fun bonusRule(otherKey: String): Rule<Int> = {
     val otherValue: Int = it[otherKey]
-    otherValue.toBonus() + it.myValues.sum()
+    otherValue.toBonus() + it.myInts.sum()
 }
@@ -5,6 +5,25 @@ import hm.binkley.layers.rule
 
 fun <T> current(default: T) = rule("*current", default, currentRule())
 
+fun current(default: Int) = rule("*current", default, intCurrentRule())
+
+fun current(default: Long) = rule("*current", default, longCurrentRule())
+
+fun current(default: Double) =
+    rule("*current", default, doubleCurrentRule())
+
 fun <T> currentRule(): Rule<T> = {
     it.myValues.last()
 }
+
+fun intCurrentRule(): Rule<Int> = {
+    it.myInts.last()
+}
+
+fun longCurrentRule(): Rule<Long> = {
+    it.myLongs.last()
+}
+
+fun doubleCurrentRule(): Rule<Double> = {
+    it.myDoubles.last()
+}
@@ -5,6 +5,18 @@ import hm.binkley.layers.rule
 
 fun total(default: Int) = rule("*total", default, totalRule())
 
+fun total(default: Long) = rule("*total", default, longTotalRule())
+
+fun total(default: Double) = rule("*total", default, doubleTotalRule())
+
 fun totalRule(): Rule<Int> = {
-    it.myValues.sum()
+    it.myInts.sum()
+}
+
+fun longTotalRule(): Rule<Long> = {
+    it.myLongs.sum()
+}
+
+fun doubleTotalRule(): Rule<Double> = {
+    it.myDoubles.sum()
 }
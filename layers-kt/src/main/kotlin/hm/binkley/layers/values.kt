@@ -4,7 +4,7 @@ import java.util.Objects.hash
 
 typealias Rule<T> = (RuleContext<T>) -> T
 
-open class Value<T>(val rule: Rule<T>?, val value: T?) : Diffable {
+open class Value<T>(val rule: Rule<T>?, open val value: T?) : Diffable {
     protected fun printSimple(value: Any?) = when (value) {
         is String -> "\"${value}\""
         else -> value.toString()
@@ -57,14 +57,53 @@ class RuleContext<T>(
     val myKey: String,
     private val layers: LayersForRuleContext
 ) {
+    private val _reads = linkedSetOf<String>()
+
+    /** Other keys read by the rule for [myKey], in order of first read. */
+    val reads: Set<String>
+        get() = _reads
+
     val myValues: List<T>
         get() = layers.allValuesFor(myKey)
 
-    operator fun <T> get(key: String) = layers.appliedValueFor<T>(key)
+    /** [myValues] unboxed, for numeric rules. */
+    val myInts: IntArray
+        get() = layers.intValuesFor(myKey)
+
+    /** [myValues] unboxed, for numeric rules. */
+    val myLongs: LongArray
+        get() = layers.longValuesFor(myKey)
+
+    /** [myValues] unboxed, for numeric rules. */
+    val myDoubles: DoubleArray
+        get() = layers.doubleValuesFor(myKey)
+
+    operator fun <T> get(key: String): T {
+        _reads += key
+        return layers.appliedValueFor(key)
+    }
 }
 
 interface LayersForRuleContext {
     fun <T> appliedValueFor(key: String): T
 
     fun <T> allValuesFor(key: String): List<T>
+
+    /** Unboxed [allValuesFor]; implementations may skip the boxing. */
+    fun intValuesFor(key: String): IntArray =
+        allValuesFor<Number>(key).let { values ->
+            IntArray(values.size) { values[it].toInt() }
+        }
+
+    /** Unboxed [allValuesFor]; implementations may skip the boxing. */
+    fun longValuesFor(key: String): LongArray =
+        allValuesFor<Number>(key).let { values ->
+            LongArray(values.size) { values[it].toLong() }
+        }
+
+    /** Unboxed [allValuesFor]; implementations may skip the boxing. */
+    fun doubleValuesFor(key: String): DoubleArray =
+        allValuesFor<Number>(key).let { values ->
+            DoubleArray(values.size) { values[it].toDouble() }
+        }
 }
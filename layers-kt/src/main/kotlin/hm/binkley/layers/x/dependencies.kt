@@ -0,0 +1,50 @@
+package hm.binkley.layers.x
+
+import hm.binkley.layers.RuleContext
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Records which keys the rule for each key read through [RuleContext.get].
+ * An edit then invalidates only the edited keys and their transitive
+ * dependents, rather than every rule.
+ *
+ * Safe for concurrent readers recording; [without] copies for the next
+ * snapshot.
+ */
+class KeyDependencies internal constructor(
+    private val reads: MutableMap<String, Set<String>>
+) {
+    constructor() : this(ConcurrentHashMap())
+
+    fun record(key: String, reads: Set<String>) {
+        this.reads[key] = reads.toSet()
+    }
+
+    /** Keys read by the rule for [key] when last evaluated. */
+    fun readsOf(key: String): Set<String> = reads[key] ?: setOf()
+
+    /** The [keys] themselves, and every key transitively reading them. */
+    fun dependentsOf(keys: Set<String>): Set<String> {
+        val readBy = mutableMapOf<String, MutableSet<String>>()
+        reads.forEach { (key, read) ->
+            read.forEach {
+                readBy.getOrPut(it) { mutableSetOf() } += key
+            }
+        }
+
+        val dependents = keys.toMutableSet()
+        val pending = ArrayDeque(keys)
+        while (pending.isNotEmpty()) {
+            readBy[pending.removeFirst()]?.forEach {
+                if (dependents.add(it)) pending.addLast(it)
+            }
+        }
+        return dependents
+    }
+
+    internal fun without(keys: Set<String>) = KeyDependencies(
+        ConcurrentHashMap(reads.filterKeys { it !in keys })
+    )
+
+    override fun toString() = "${this::class.simpleName}$reads"
+}
@@ -41,11 +41,10 @@ class InMemoryLayerPersistence :
 }
 
 class InMemoryLayers(
-    creation: InMemoryLayerCreation,
-    persistence: InMemoryLayerPersistence
+    persistence: InMemoryLayerPersistence = InMemoryLayerPersistence()
 ) :
     XLayers<InMemoryLayer, InMemoryLayerCreation, InMemoryLayerMutation, InMemoryLayerPersistence, InMemoryLayers>(
-        creation,
+        ::InMemoryLayerCreation,
         persistence
     ) {
     init {
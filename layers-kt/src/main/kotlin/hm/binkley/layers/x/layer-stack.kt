@@ -0,0 +1,67 @@
+package hm.binkley.layers.x
+
+private const val CHUNK = 1024
+
+/**
+ * An immutable list sharing structure between versions, so publishing a
+ * stack after appending, dropping, or replacing one layer copies at most
+ * one chunk and the chunk index, rather than every layer.
+ */
+internal class LayerStack<E> private constructor(
+    private val chunks: Array<Array<Any?>>,
+    override val size: Int
+) : AbstractList<E>() {
+    constructor() : this(arrayOf(), 0)
+
+    override fun get(index: Int): E {
+        checkIndex(index)
+        @Suppress("UNCHECKED_CAST")
+        return chunks[index / CHUNK][index % CHUNK] as E
+    }
+
+    operator fun plus(element: E): LayerStack<E> {
+        val tail = size % CHUNK
+        val chunks = if (0 == tail) Array(this.chunks.size + 1) {
+            if (it < this.chunks.size) this.chunks[it]
+            else arrayOf<Any?>(element)
+        } else this.chunks.copyOf().also {
+            it[it.lastIndex] = it[it.lastIndex].copyOf(tail + 1).apply {
+                this[tail] = element
+            }
+        }
+
+        return LayerStack(chunks, size + 1)
+    }
+
+    fun set(index: Int, element: E): LayerStack<E> {
+        checkIndex(index)
+        val chunk = index / CHUNK
+        val chunks = chunks.copyOf().also {
+            it[chunk] = it[chunk].copyOf().apply {
+                this[index % CHUNK] = element
+            }
+        }
+
+        return LayerStack(chunks, size)
+    }
+
+    fun dropLast(): LayerStack<E> {
+        checkIndex(size - 1)
+        val size = size - 1
+        val tail = size % CHUNK
+        val chunks = if (0 == tail) chunks.copyOfRange(0, chunks.size - 1)
+        else chunks.copyOf().also {
+            it[it.lastIndex] = it[it.lastIndex].copyOf(tail)
+        }
+
+        return LayerStack(chunks, size)
+    }
+
+    private fun checkIndex(index: Int) {
+        if (index < 0 || index >= size)
+            throw IndexOutOfBoundsException("Index: $index, Size: $size")
+    }
+}
+
+internal fun <E> List<E>.toLayerStack() =
+    fold(LayerStack<E>()) { stack, element -> stack + element }
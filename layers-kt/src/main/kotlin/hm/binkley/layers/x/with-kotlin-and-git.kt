@@ -77,7 +77,6 @@ class WithKotlinAndGitLayerPersistence(
 }
 
 class WithKotlinAndGitLayers(
-    creation: WithKotlinAndGitLayerCreation,
     scripting: KotlinScriptedForLayers,
     persistence: WithKotlinAndGitLayerPersistence
 ) : XLayers<
@@ -86,7 +85,7 @@ class WithKotlinAndGitLayers(
         WithKotlinAndGitLayerMutation,
         WithKotlinAndGitLayerPersistence,
         WithKotlinAndGitLayers>(
-    creation,
+    ::WithKotlinAndGitLayerCreation,
     persistence
 ),
     ScriptedForLayers by scripting {
@@ -1,13 +1,26 @@
 package hm.binkley.layers.x
 
 import hm.binkley.layers.Diffable
+import hm.binkley.layers.DoubleValue
+import hm.binkley.layers.IntValue
 import hm.binkley.layers.LayersForRuleContext
+import hm.binkley.layers.LongValue
 import hm.binkley.layers.Rule
 import hm.binkley.layers.RuleContext
 import hm.binkley.layers.Value
+import hm.binkley.layers.isPresent
+import hm.binkley.layers.toDoubles
+import hm.binkley.layers.toInts
+import hm.binkley.layers.toLongs
 import hm.binkley.layers.value
 import lombok.Generated
+import java.util.Collections.unmodifiableSortedMap
 import java.util.Objects.hash
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 typealias MutableValueMap = MutableMap<String, Value<*>>
 
@@ -19,6 +32,14 @@ typealias MutableValueMap = MutableMap<String, Value<*>>
  * }
  * ```
  *
+ * Readers ([asMap], [asList], [appliedValueFor], [allValuesFor]) never
+ * block: they work from an immutable [XLayersSnapshot] published atomically
+ * after each change.  Writers ([newLayer], [commit], [rollback], and
+ * [XLayer.edit]) are serialized, and each bumps [sequence].
+ *
+ * [layers] and [current] are the live layers, for editing: their contents
+ * change under [XLayer.edit], so read through [asList] or [snapshot].
+ *
  * @see newLayer()
  */
 abstract class XLayers<
@@ -27,80 +48,263 @@ abstract class XLayers<
         LM : XLayerMutation<L, LC, LM, LP, LS>,
         LP : PersistedForLayers<L, LC, LM, LP, LS>,
         LS : XLayers<L, LC, LM, LP, LS>>(
-    private val creation: LC,
+    creation: (LS) -> LC,
     private val persistence: LP,
     private val _layers: MutableList<L> = persistence.load().toMutableList()
 ) : LayersForRuleContext {
+    @Suppress("UNCHECKED_CAST")
+    private val creation = creation(this as LS)
+    private val writer = ReentrantLock()
+    private val published = AtomicReference(
+        XLayersSnapshot(
+            _layers.toLayerStack(),
+            _layers.map { it.freeze() }.toLayerStack(),
+            0L
+        )
+    )
+
     /** Please call as part of child class `init` block. */
-    protected fun newLayer() {
+    protected fun newLayer() = write {
         // Cannot use `init`: child not yet initialized
-        val layer = creation.new(_layers.size)
-        _layers += layer
+        val layer = create()
+        val previous = published.get()
+        publish(
+            previous.layerStack + layer,
+            previous.contents + layer.freeze(),
+            layer.keys
+        )
     }
 
+    /** The most recently published, immutable view of these layers. */
+    val snapshot: XLayersSnapshot<L>
+        get() = published.get()
+
+    /** Bumped on every change; caches compare to detect staleness. */
+    val sequence: Long
+        get() = snapshot.sequence
+
+    /** The live layers, for editing; see [asList] to read. */
     val layers: List<L>
-        get() = _layers
+        get() = snapshot.layers
     val current: L
         get() = layers[0]
 
-    fun asList(): List<Map<String, Any>> = _layers
+    /** Frozen copies of each layer's contents, safe to read while edited. */
+    fun asList(): List<Map<String, Any>> = snapshot.contents
 
-    // TODO: Simplify
-    fun asMap(): Map<String, Any> =
-        _layers.asReversed().flatMap {
-            it.entries
-        }.filter {
-            null != it.value.rule
-        }.map {
-            val key = it.key
-            @Suppress("UNCHECKED_CAST")
-            val rule = it.value.rule as Rule<Any>
-            val value = rule(
-                RuleContext(
-                    key,
-                    this
-                )
-            )
-            key to value
-        }.asReversed().toMap().toSortedMap()
+    fun asMap(): Map<String, Any> = snapshot.asMap()
 
-    fun commit(): L {
+    fun commit(): L = write {
         persistence.commit(current)
         newLayer()
-        return current
+        current
     }
 
-    fun rollback(): L {
+    fun rollback(): L = write {
         persistence.rollback(current)
         _layers.removeAt(_layers.lastIndex)
-        newLayer()
-        return current
+        val layer = create()
+        val previous = published.get()
+        publish(
+            previous.layerStack.dropLast() + layer,
+            previous.contents.dropLast() + layer.freeze(),
+            previous.contents.last().keys + layer.keys
+        )
+        current
     }
 
-    override fun <T> appliedValueFor(key: String) =
-        _layers.asReversed().flatMap {
-            it.entries
-        }.filter {
-            it.key == key
-        }.first {
-            null != it.value.rule
-        }.let {
-            @Suppress("UNCHECKED_CAST")
-            (it.value.rule!! as Rule<T>)(
-                RuleContext(key, this)
-            )
+    override fun <T> appliedValueFor(key: String): T =
+        snapshot.appliedValueFor(key)
+
+    /** All values for [key] from newest to oldest. */
+    override fun <T> allValuesFor(key: String): List<T> =
+        snapshot.allValuesFor(key)
+
+    override fun intValuesFor(key: String) = snapshot.intValuesFor(key)
+
+    override fun longValuesFor(key: String) = snapshot.longValuesFor(key)
+
+    override fun doubleValuesFor(key: String) =
+        snapshot.doubleValuesFor(key)
+
+    /** Runs [block] as the single writer, republishing [layer] after. */
+    internal fun <R> edit(layer: L, block: () -> R): R = write {
+        block().also {
+            val index =
+                if (layer === _layers.getOrNull(layer.slot)) layer.slot
+                else _layers.indexOfFirst { it === layer }
+            // Not in the stack: nothing new for readers to see
+            if (-1 != index) {
+                val previous = published.get()
+                val before = previous.contents[index]
+                val after = layer.freeze()
+                publish(
+                    previous.layerStack,
+                    previous.contents.set(index, after),
+                    (before.keys + after.keys).filter {
+                        before[it] != after[it]
+                    }.toSet()
+                )
+            }
         }
+    }
+
+    private fun <R> write(block: () -> R): R = writer.withLock(block)
+
+    private fun create() = creation.new(_layers.size).also {
+        _layers += it
+    }
+
+    private fun publish(
+        layers: LayerStack<L>,
+        contents: LayerStack<Map<String, Value<*>>>,
+        edited: Set<String>
+    ) = published.set(published.get().next(layers, contents, edited))
+}
+
+/**
+ * An immutable view of [XLayers] at [sequence].  Rules evaluated against a
+ * snapshot see only its contents, so nested [RuleContext] reads stay
+ * consistent even while a writer commits.
+ *
+ * Applied rule values are cached for the life of the snapshot, and carried
+ * into the [next] snapshot unless [dependencies] show they read an edited
+ * key.
+ */
+class XLayersSnapshot<L : Map<String, Value<*>>> internal constructor(
+    internal val layerStack: LayerStack<L>,
+    internal val contents: LayerStack<Map<String, Value<*>>>,
+    val sequence: Long,
+    val dependencies: KeyDependencies = KeyDependencies(),
+    private val applied: ConcurrentHashMap<String, Applied> =
+        ConcurrentHashMap()
+) : LayersForRuleContext {
+    /**
+     * The live layers as of [sequence], for editing: their contents may
+     * since have changed.  Rules and [asMap] read frozen copies instead.
+     */
+    val layers: List<L>
+        get() = layerStack
+
+    /** Reads of boxed values by rules, as through [RuleContext.myValues]. */
+    internal val boxedReads = AtomicLong()
+
+    fun asMap(): Map<String, Any> = contents.flatMap {
+        it.entries
+    }.filter {
+        null != it.value.rule
+    }.map {
+        it.key
+    }.associateWith {
+        appliedValueFor<Any>(it)
+    }.toSortedMap()
+
+    override fun <T> appliedValueFor(key: String): T =
+        appliedValueFor(key, listOf())
 
     /** All values for [key] from newest to oldest. */
     @Suppress("UNCHECKED_CAST")
     override fun <T> allValuesFor(key: String) =
-        _layers.asReversed().mapNotNull {
+        contents.asReversed().mapNotNull {
             it[key]
         }.mapNotNull {
             it.value
         } as List<T>
+
+    override fun intValuesFor(key: String) = presentValuesFor(key).toInts()
+
+    override fun longValuesFor(key: String) =
+        presentValuesFor(key).toLongs()
+
+    override fun doubleValuesFor(key: String) =
+        presentValuesFor(key).toDoubles()
+
+    internal fun next(
+        layers: LayerStack<L>,
+        contents: LayerStack<Map<String, Value<*>>>,
+        edited: Set<String>
+    ): XLayersSnapshot<L> {
+        // Copy values before finding dependents: a value is only cached
+        // after its reads are recorded
+        val carried = ConcurrentHashMap(applied)
+        val stale = dependencies.dependentsOf(edited)
+        stale.forEach { carried.remove(it) }
+
+        return XLayersSnapshot(
+            layers,
+            contents,
+            sequence + 1,
+            dependencies.without(stale),
+            carried
+        )
+    }
+
+    override fun toString() =
+        "${this::class.simpleName}{sequence=$sequence, contents=$contents}"
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> appliedValueFor(key: String, path: List<String>): T {
+        if (key in path)
+            error("Cycle in rules: ${(path + key).joinToString(" -> ")}")
+        // Not computeIfAbsent: rules recursively read other keys
+        applied[key]?.also { return it.value as T }
+
+        val rule = contents.asReversed().flatMap {
+            it.entries
+        }.filter {
+            it.key == key
+        }.first {
+            null != it.value.rule
+        }.value.rule!! as Rule<T>
+        val context = RuleContext<T>(key, Evaluation(path + key))
+        val value = rule(context)
+
+        dependencies.record(key, context.reads)
+        applied.putIfAbsent(key, Applied(value))
+        return value
+    }
+
+    /** Like [allValuesFor], but without unboxing numeric values. */
+    private fun presentValuesFor(key: String) =
+        contents.asReversed().mapNotNull {
+            it[key]
+        }.filter {
+            it.isPresent
+        }
+
+    /**
+     * Tracks the keys being evaluated to detect cycles among rules.
+     * Numeric reads go straight to the unboxed values: the interface
+     * defaults would box each through [allValuesFor].
+     */
+    private inner class Evaluation(
+        private val path: List<String>
+    ) : LayersForRuleContext {
+        override fun <T> appliedValueFor(key: String): T =
+            appliedValueFor(key, path)
+
+        override fun <T> allValuesFor(key: String): List<T> {
+            boxedReads.incrementAndGet()
+            return this@XLayersSnapshot.allValuesFor(key)
+        }
+
+        override fun intValuesFor(key: String) =
+            this@XLayersSnapshot.intValuesFor(key)
+
+        override fun longValuesFor(key: String) =
+            this@XLayersSnapshot.longValuesFor(key)
+
+        override fun doubleValuesFor(key: String) =
+            this@XLayersSnapshot.doubleValuesFor(key)
+    }
+
+    /** Boxes applied values: rules may apply to `null`. */
+    internal class Applied(val value: Any?)
 }
 
+private fun Map<String, Value<*>>.freeze(): Map<String, Value<*>> =
+    unmodifiableSortedMap(toSortedMap())
+
 abstract class XLayer<
         L : XLayer<L, LC, LM, LP, LS>,
         LC : XLayerCreation<L, LC, LM, LP, LS>,
@@ -116,7 +320,9 @@ abstract class XLayer<
     @Suppress("UNCHECKED_CAST")
     fun edit(block: LM.() -> Unit): L = apply {
         val layer = this as L
-        asMutation(layer, contents).block()
+        factory.edit(layer) {
+            asMutation(layer, contents).block()
+        }
     } as L
 
     override fun toDiff() = contents.entries.joinToString("\n") {
@@ -163,4 +369,16 @@ abstract class XLayerMutation<
         contents[key] =
             if (value is Value<*>) value else value(value)
     }
+
+    operator fun set(key: String, value: Int) {
+        contents[key] = IntValue(value)
+    }
+
+    operator fun set(key: String, value: Long) {
+        contents[key] = LongValue(value)
+    }
+
+    operator fun set(key: String, value: Double) {
+        contents[key] = DoubleValue(value)
+    }
 }
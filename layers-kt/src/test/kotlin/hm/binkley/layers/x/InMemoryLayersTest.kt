@@ -0,0 +1,222 @@
+package hm.binkley.layers.x
+
+import hm.binkley.layers.IntValue
+import hm.binkley.layers.rule
+import hm.binkley.layers.rules.bonus
+import hm.binkley.layers.rules.current
+import hm.binkley.layers.rules.total
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors.newFixedThreadPool
+import java.util.concurrent.TimeUnit.SECONDS
+
+internal class InMemoryLayersTest {
+    @Test
+    internal fun `should bump sequence on each write`() {
+        val layers = InMemoryLayers()
+        val initial = layers.sequence
+
+        layers.current.edit {
+            this["a"] = total(default = 0)
+        }
+        assertThat(layers.sequence).isEqualTo(initial + 1)
+
+        layers.commit()
+        assertThat(layers.sequence).isEqualTo(initial + 2)
+    }
+
+    @Test
+    internal fun `should keep old snapshots unchanged`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = total(default = 0)
+        }
+        layers.commit()
+        layers.layers.last().edit {
+            this["a"] = 1
+        }
+        val before = layers.snapshot
+
+        layers.layers.last().edit {
+            this["b"] = 2
+        }
+
+        assertThat(before.asMap()).containsOnlyKeys("a")
+        assertThat(before.allValuesFor<Int>("b")).isEmpty()
+        assertThat(layers.allValuesFor<Int>("b")).containsExactly(2)
+    }
+
+    @Test
+    internal fun `should list frozen layer contents`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = total(default = 0)
+        }
+        val before = layers.asList()
+
+        layers.current.edit {
+            this["b"] = total(default = 0)
+        }
+
+        assertThat(before.single()).containsOnlyKeys("a")
+        assertThat(layers.asList().single()).containsOnlyKeys("a", "b")
+    }
+
+    @Test
+    internal fun `should read while a single writer edits`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = total(default = 0)
+        }
+        layers.commit()
+
+        val writes = 1_000
+        val readers = 4
+        val threads = newFixedThreadPool(readers)
+        val done = CountDownLatch(1)
+        val reads = (1..readers).map {
+            threads.submit<Int> {
+                var seen = 0
+                while (0L != done.count) {
+                    val snapshot = layers.snapshot
+                    // Each snapshot is internally consistent
+                    assertThat(snapshot.asMap()["a"])
+                        .isEqualTo(snapshot.allValuesFor<Int>("a").sum())
+                    ++seen
+                }
+                seen
+            }
+        }
+
+        repeat(writes) {
+            layers.layers.last().edit {
+                this["a"] = 1
+            }
+            layers.commit()
+        }
+        done.countDown()
+
+        reads.forEach {
+            assertThat(it.get()).isPositive()
+        }
+        threads.shutdown()
+        threads.awaitTermination(1L, SECONDS)
+
+        assertThat(layers.asMap()).containsEntry("a", writes)
+    }
+
+    @Test
+    internal fun `should record keys read by rules`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = total(default = 0)
+            this["a-bonus"] = bonus(otherKey = "a")
+        }
+
+        layers.asMap()
+
+        assertThat(layers.snapshot.dependencies.readsOf("a")).isEmpty()
+        assertThat(layers.snapshot.dependencies.readsOf("a-bonus"))
+            .containsExactly("a")
+    }
+
+    @Test
+    internal fun `should recompute only dependents of edited keys`() {
+        val evaluated = mutableListOf<String>()
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = rule("a", 0) {
+                evaluated += "a"
+                it.myValues.sum()
+            }
+            this["b"] = rule("b", 0) {
+                evaluated += "b"
+                it.get<Int>("a") + 1
+            }
+            this["c"] = rule("c", 0) {
+                evaluated += "c"
+                it.myValues.sum()
+            }
+        }
+        layers.commit()
+
+        assertThat(layers.asMap())
+            .containsEntry("a", 0)
+            .containsEntry("b", 1)
+            .containsEntry("c", 0)
+        evaluated.clear()
+
+        layers.layers.last().edit {
+            this["a"] = 2
+        }
+
+        assertThat(layers.asMap())
+            .containsEntry("a", 2)
+            .containsEntry("b", 3)
+            .containsEntry("c", 0)
+        assertThat(evaluated).containsExactlyInAnyOrder("a", "b")
+    }
+
+    @Test
+    internal fun `should detect cycles among rules`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = rule("a", 0) { it.get<Int>("b") }
+            this["b"] = rule("b", 0) { it.get<Int>("a") }
+        }
+
+        assertThatThrownBy {
+            layers.asMap()
+        }.isInstanceOf(IllegalStateException::class.java)
+            .hasMessage("Cycle in rules: a -> b -> a")
+    }
+
+    @Test
+    internal fun `should evaluate many numeric layers unboxed`() {
+        val n = 100_000
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["int"] = total(default = 0)
+            this["long"] = total(default = 0L)
+            this["double"] = total(default = 0.0)
+            this["latest"] = current(default = -1)
+        }
+        layers.commit()
+        repeat(n) { i ->
+            layers.layers.last().edit {
+                this["int"] = 1
+                this["long"] = i.toLong()
+                this["double"] = 0.5
+                this["latest"] = i
+            }
+            layers.commit()
+        }
+
+        assertThat(layers.layers.last { it.isNotEmpty() }["int"])
+            .isInstanceOf(IntValue::class.java)
+        val snapshot = layers.snapshot
+        assertThat(snapshot.asMap())
+            .containsEntry("int", n)
+            .containsEntry("long", n * (n - 1L) / 2)
+            .containsEntry("double", n * 0.5)
+            // Same ordering as the boxed rule: last of newest to oldest
+            .containsEntry("latest", -1)
+        // Numeric rules never fell back to boxing through allValuesFor
+        assertThat(snapshot.boxedReads.get()).isZero()
+    }
+
+    @Test
+    internal fun `should count boxed reads by rules`() {
+        val layers = InMemoryLayers()
+        layers.current.edit {
+            this["a"] = rule("a", 0) { it.myValues.sum() }
+        }
+
+        val snapshot = layers.snapshot
+        snapshot.asMap()
+
+        assertThat(snapshot.boxedReads.get()).isEqualTo(1L)
+    }
+}
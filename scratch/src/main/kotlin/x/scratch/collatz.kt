@@ -3,6 +3,9 @@ package x.scratch
 import java.math.BigInteger
 import java.math.BigInteger.ONE
 import java.math.BigInteger.ZERO
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+import kotlin.system.measureTimeMillis
 
 fun main() {
     println("== ALTERNATING MERSENNE NUMBERS ARE DIVISIBLE BY 3...")
@@ -18,9 +21,9 @@ fun main() {
     println("== COLLATZ")
     val buckets = mutableMapOf<Int, MutableSet<Int>>()
     for (n in 2..100) {
-        val path = path(n, ArrayList(256))
-        println(format(n, path))
-        buckets.merge(path.size - 1, primeFactorize(n)) { old, new ->
+        val (evens, odds) = parities(n)
+        println(format(n, evens, odds))
+        buckets.merge(evens + odds, primeFactorize(n)) { old, new ->
             old += new
             old
         }
@@ -31,19 +34,28 @@ fun main() {
     buckets.toList()
         .sortedByDescending { (_, k) -> k.size }
         .forEach { (k, v) -> println(format(k, v)) }
-}
 
-private fun format(n: Int, path: List<Int>): String {
-    var evens = 0
-    var odds = 0
-    for (i in path) {
-        if (1 == i) break // Ignore terminal 1
-        if (0 == i % 2) ++evens else ++odds
+    println()
+    println("== HISTOGRAM OF STEPS")
+    val steps = CollatzSteps()
+    for (limit in listOf(1_000_000L, 100_000_000L)) {
+        var histogram: LongArray
+        val millis = measureTimeMillis {
+            histogram = steps.histogram(1L..limit)
+        }
+        val mode = histogram.indices.maxByOrNull { histogram[it] }
+        println(
+            "UP TO $limit -> most steps: ${histogram.lastIndex};" +
+                " mode: $mode steps (${histogram[mode!!]} times);" +
+                " ${millis}ms"
+        )
     }
+}
+
+private fun format(n: Int, evens: Int, odds: Int): String {
     val evenOddRatio = "%.1f".format(100 * evens.toDouble() / (evens + odds))
 
-    // Steps is size-1 to ignore the final 1
-    return "$n -> ${path.size - 1} steps" +
+    return "$n -> ${evens + odds} steps" +
             " -> prime factors: ${primeFactorize(n)}" +
             " -> even/odd: $evenOddRatio% ($evens/$odds)"
 }
@@ -58,41 +70,127 @@ private fun format(k: Int, v: Set<Int>) =
         "- $k: ${v.sorted()};" +
                 " count path/primes: ${k / v.size} ($k/${v.size})"
 
-private tailrec fun path(n: Int, ns: MutableList<Int>): List<Int> {
-    ns += n
-    if (1 == n) return ns
-    return path(next(n), ns)
+/** Counts the even and odd steps from [n] to 1, ignoring the final 1. */
+private fun parities(n: Int): Pair<Int, Int> {
+    var evens = 0
+    var odds = 0
+    var m = n.toLong()
+    while (1L != m) {
+        if (0L == m % 2) {
+            ++evens
+            m /= 2
+        } else {
+            ++odds
+            m = 3 * m + 1
+        }
+    }
+    return evens to odds
 }
 
-private fun next(n: Int) = when {
-    0 == n % 2 -> n / 2
-    else -> 3 * n + 1
-}
+/**
+ * Counts the steps for `n` to reach 1 under the
+ * [Collatz function](https://en.wikipedia.org/wiki/Collatz_conjecture),
+ * the "total stopping time".
+ *
+ * Steps for `n` below [cacheSize] are cached in a primitive array, so
+ * larger `n` walk only until they drop below the cache.  Walks leaving the
+ * range of `Long` continue as `BigInteger`.
+ */
+class CollatzSteps(val cacheSize: Int = 1 shl 24) {
+    private val cache = ShortArray(cacheSize)
+
+    init {
+        require(2 <= cacheSize) { "Cache too small: $cacheSize" }
+        // Ascending, so each walk ends on steps already cached
+        for (n in 2 until cacheSize)
+            cache[n] = walk(n.toLong(), n.toLong()).toShort()
+    }
+
+    operator fun get(n: Long): Int {
+        require(1L <= n) { "Not positive: $n" }
+        return walk(n, cacheSize.toLong())
+    }
 
-private val firstNPrimes = listOf(
-    2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67,
-    71, 73, 79, 83, 89, 97, 101, 103, 107, 109, 113, 127, 131, 137, 139, 149,
-    151, 157, 163, 167, 173, 179, 181, 191, 193, 197, 199, 211, 223, 227, 229,
-    233, 239, 241, 251, 257, 263, 269, 271, 277, 281, 283, 293, 307, 311, 313,
-    317, 331, 337, 347, 349, 353, 359, 367, 373, 379, 383, 389, 397, 401, 409,
-    419, 421, 431, 433, 439, 443, 449, 457, 461, 463, 467, 479, 487, 491, 499,
-    503, 509, 521, 523, 541, 547, 557, 563, 569, 571, 577, 587, 593, 599, 601,
-    607, 613, 617, 619, 631, 641, 643, 647, 653, 659, 661, 673, 677, 683, 691,
-    701, 709, 719, 727, 733, 739, 743, 751, 757, 761, 769, 773, 787, 797, 809,
-    811, 821, 823, 827, 829, 839, 853, 857, 859, 863, 877, 881, 883, 887, 907,
-    911, 919, 929, 937, 941, 947, 953, 967, 971, 977, 983, 991, 997, 1009,
-    1013
-)
-
-/** @todo This is such an _amazingly naive_ implementation */
-private fun primeFactorize(n: Int): MutableSet<Int> {
-    val factors = mutableSetOf<Int>()
-    for (p in firstNPrimes) {
-        if (0 == n % p) factors += p
+    /**
+     * Counts of steps for each `n` in [range], indexed by steps.  Splits
+     * the range across [pool], each part counting into its own array.
+     */
+    fun histogram(
+        range: LongRange,
+        pool: ForkJoinPool = ForkJoinPool.commonPool()
+    ): LongArray {
+        require(1L <= range.first) { "Not positive: $range" }
+        if (range.isEmpty()) return LongArray(0)
+        return pool.invoke(Histogram(range.first, range.last + 1))
+    }
+
+    /** Walks [n] until below [bound], then adds the steps cached there. */
+    private fun walk(n: Long, bound: Long): Int {
+        var m = n
+        var steps = 0
+        while (bound <= m) {
+            if (0L == m and 1L) {
+                val zeros = m.countTrailingZeroBits()
+                m = m shr zeros
+                steps += zeros
+            } else {
+                if (MAX_ODD < m) return steps + bigWalk(m.toBigInteger())
+                m += (m shr 1) + 1 // (3m + 1) / 2
+                steps += 2
+            }
+        }
+        return steps + cache[m.toInt()]
+    }
+
+    private fun bigWalk(n: BigInteger): Int {
+        var m = n
+        var steps = 0
+        while (Long.SIZE_BITS - 1 <= m.bitLength()) {
+            m = if (m.testBit(0)) m * THREE + ONE else m.shiftRight(1)
+            ++steps
+        }
+        return steps + walk(m.toLong(), cacheSize.toLong())
+    }
+
+    private inner class Histogram(
+        private val from: Long,
+        private val to: Long
+    ) : RecursiveTask<LongArray>() {
+        override fun compute(): LongArray {
+            if (SPLIT_SIZE < to - from) {
+                val middle = from + (to - from) / 2
+                val left = Histogram(from, middle).fork()
+                return Histogram(middle, to).compute() merge left.join()
+            }
+
+            var counts = LongArray(INITIAL_STEPS)
+            for (n in from until to) {
+                val steps = walk(n, cacheSize.toLong())
+                if (counts.size <= steps) counts = counts.copyOf(2 * steps)
+                ++counts[steps]
+            }
+            return counts.copyOf(counts.indexOfLast { 0L != it } + 1)
+        }
     }
-    return factors
 }
 
+/** The largest odd `m` for which `(3m + 1) / 2` fits a `Long`. */
+private const val MAX_ODD = (Long.MAX_VALUE - 2) / 3 * 2 + 1
+private const val SPLIT_SIZE = 1L shl 16
+private const val INITIAL_STEPS = 1 shl 10
+
+private infix fun LongArray.merge(other: LongArray): LongArray {
+    val (longer, shorter) =
+        if (size >= other.size) this to other else other to this
+    shorter.forEachIndexed { steps, count -> longer[steps] += count }
+    return longer
+}
+
+private val smallestPrimeFactors = SmallestPrimeFactors(100)
+
+private fun primeFactorize(n: Int): MutableSet<Int> =
+    smallestPrimeFactors.distinctFactors(n).toMutableSet()
+
 private val THREE = BigInteger.valueOf(3)
 private fun divisibleBy3(p: Int) = ZERO == (pow2x(p) - ONE) % THREE
 private fun pow2x(p: Int) = ONE.shiftLeft(p)
@@ -1,5 +1,11 @@
 package x.scratch
 
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveAction
+
 fun main() {
     println("==DIFFERENCE ENGINE")
 
@@ -23,6 +29,21 @@ fun main() {
     println("ADDED -> ${diff.addedByUs}")
     println("REMOVED -> ${diff.removedByUs}")
     println("CHANGED -> ${diff.changedByUs}")
+
+    println()
+    val counts = engine.diffSorted(
+        ours.sortedBy { it.key }.iterator(),
+        theirs.sortedBy { it.key }.iterator(),
+        naturalOrder(),
+        batchSize = 2,
+    ) { batch ->
+        println("BATCH -> $batch")
+    }
+    println("COUNTS -> $counts")
+
+    println()
+    println("PARALLEL -> ${engine.diffParallel(ours, theirs).changedByUs}")
+    println("SAMPLED COUNTS -> ${engine.countParallel(ours, theirs, 0.5)}")
 }
 
 class DifferenceEngine<KEY, OURS, THEIRS>(
@@ -42,49 +63,297 @@ class DifferenceEngine<KEY, OURS, THEIRS>(
             theirs
         )
     }
+
+    /**
+     * Diffs across the common pool: partitions both sides by hash of key,
+     * then classifies each partition in one pass.  Results are in no
+     * particular order.
+     *
+     * With [sample] below 1, only keys whose hash falls in that fraction
+     * are compared, the same keys on both sides, for cheap monitoring of
+     * drift.
+     */
+    fun diffParallel(
+        ours: Collection<OURS>,
+        theirs: Collection<THEIRS>,
+        sample: Double = 1.0,
+    ): Difference<KEY, OURS, THEIRS> {
+        val classified = partitioned(ours, theirs, sample, collect = true)
+        return Difference(
+            classified.concat { it.added },
+            classified.concat { it.removed },
+            classified.concat { it.changed },
+        )
+    }
+
+    /**
+     * As [diffParallel], but only counts, keeping no records.  With
+     * [sample], divide the counts by it to estimate the whole.
+     */
+    fun countParallel(
+        ours: Collection<OURS>,
+        theirs: Collection<THEIRS>,
+        sample: Double = 1.0,
+    ): DiffCounts {
+        val classified = partitioned(ours, theirs, sample, collect = false)
+        return DiffCounts(
+            classified.sumOf { it.addedCount },
+            classified.sumOf { it.removedCount },
+            classified.sumOf { it.changedCount },
+        )
+    }
+
+    private fun partitioned(
+        ours: Collection<OURS>,
+        theirs: Collection<THEIRS>,
+        sample: Double,
+        collect: Boolean,
+    ): List<Classification<KEY, OURS, THEIRS>> {
+        require(sample > 0.0 && sample <= 1.0) { "Not in (0, 1]: $sample" }
+        val n = ForkJoinPool.commonPool().parallelism
+        val cutoff = (sample * SAMPLE_BUCKETS).toInt()
+        val ourPartitions = partition(ours, n, cutoff, ourCommonKey)
+        val theirPartitions = partition(theirs, n, cutoff, theirCommonKey)
+        val classified = List(n) {
+            Classification(ourCommonKey, theirCommonKey, equivalent, collect)
+        }
+
+        ForkJoinPool.commonPool().invoke(object : RecursiveAction() {
+            override fun compute() {
+                ForkJoinTask.invokeAll(classified.mapIndexed { i, it ->
+                    ForkJoinTask.adapt {
+                        it.classify(ourPartitions[i], theirPartitions[i])
+                    }
+                })
+            }
+        })
+        return classified
+    }
+
+    /**
+     * Diffs inputs already sorted by key in [comparator] order, merging
+     * them in one pass.  Calls [emit] with each batch of up to [batchSize]
+     * deltas, in key order, so memory is bounded by the batch rather than
+     * the inputs.  Keys must be strictly increasing on each side.
+     *
+     * For inputs too large to sort in memory, sort them beforehand, such
+     * as with `sort(1)` on exports or `ORDER BY` in queries.
+     */
+    fun diffSorted(
+        ours: Iterator<OURS>,
+        theirs: Iterator<THEIRS>,
+        comparator: Comparator<in KEY>,
+        batchSize: Int = 1_000,
+        emit: (List<Delta<OURS, THEIRS>>) -> Unit,
+    ): DiffCounts {
+        require(0 < batchSize) { "Not positive: $batchSize" }
+        var added = 0L
+        var removed = 0L
+        var changed = 0L
+        merge(ours, theirs, comparator)
+            .onEach {
+                when (it) {
+                    is Delta.Added -> ++added
+                    is Delta.Removed -> ++removed
+                    is Delta.Changed -> ++changed
+                }
+            }
+            .chunked(batchSize)
+            .forEach(emit)
+        return DiffCounts(added, removed, changed)
+    }
+
+    /** As [diffSorted], but as a cold flow of deltas in key order. */
+    fun diffSortedFlow(
+        ours: Sequence<OURS>,
+        theirs: Sequence<THEIRS>,
+        comparator: Comparator<in KEY>,
+    ): Flow<Delta<OURS, THEIRS>> = sequence {
+        yieldAll(merge(ours.iterator(), theirs.iterator(), comparator))
+    }.asFlow()
+
+    private fun merge(
+        ours: Iterator<OURS>,
+        theirs: Iterator<THEIRS>,
+        comparator: Comparator<in KEY>,
+    ) = sequence<Delta<OURS, THEIRS>> {
+        val our = SortedCursor(ours, ourCommonKey, comparator)
+        val their = SortedCursor(theirs, theirCommonKey, comparator)
+        while (our.present || their.present) {
+            val order = when {
+                !their.present -> -1
+                !our.present -> 1
+                else -> comparator.compare(our.key, their.key)
+            }
+            when {
+                0 > order -> {
+                    yield(Delta.Added(our.value))
+                    our.advance()
+                }
+                0 < order -> {
+                    yield(Delta.Removed(their.value))
+                    their.advance()
+                }
+                else -> {
+                    if (!equivalent(our.value, their.value))
+                        yield(Delta.Changed(our.value, their.value))
+                    our.advance()
+                    their.advance()
+                }
+            }
+        }
+    }
+}
+
+/** One record of a streamed difference; see [DifferenceEngine.diffSorted]. */
+sealed class Delta<out OURS, out THEIRS> {
+    data class Added<OURS>(val ours: OURS) : Delta<OURS, Nothing>()
+    data class Removed<THEIRS>(val theirs: THEIRS) : Delta<Nothing, THEIRS>()
+    data class Changed<OURS, THEIRS>(val ours: OURS, val theirs: THEIRS) :
+        Delta<OURS, THEIRS>()
 }
 
-class Difference<KEY, OURS, THEIRS>(
-    ourCommonKey: (OURS) -> KEY,
-    theirCommonKey: (THEIRS) -> KEY,
-    equivalent: (OURS, THEIRS) -> Boolean,
-    ours: Collection<OURS>,
-    theirs: Collection<THEIRS>,
+data class DiffCounts(
+    val added: Long,
+    val removed: Long,
+    val changed: Long,
+)
+
+/** The head of a sorted iterator, checking that keys strictly increase. */
+private class SortedCursor<KEY, T>(
+    private val items: Iterator<T>,
+    private val commonKey: (T) -> KEY,
+    private val comparator: Comparator<in KEY>,
 ) {
-    val addedByUs: List<OURS>
-    val removedByUs: List<THEIRS>
-    val changedByUs: List<Pair<OURS, THEIRS>>
+    var present = false
+        private set
+    private var _value: T? = null
+    private var _key: KEY? = null
+
+    @Suppress("UNCHECKED_CAST")
+    val value: T get() = _value as T
+
+    @Suppress("UNCHECKED_CAST")
+    val key: KEY get() = _key as KEY
 
     init {
-        val oursByKey = ours.map {
-            ourCommonKey(it) to it
-        }.toMap()
-        val theirsByKey = theirs.map {
-            theirCommonKey(it) to it
-        }.toMap()
-
-        addedByUs = oursByKey.entries
-            .filter { !theirsByKey.containsKey(it.key) }
-            .map { it.value }
-            .toList()
-        removedByUs = theirsByKey.entries
-            .filter { !oursByKey.containsKey(it.key) }
-            .map { it.value }
-            .toList()
-        // Suppress is unfortunate: Kotlin compiler does not understand after
-        // the filter line that "second" cannot be NULL.  This the rare case
-        // where Java code compiles more efficiently
+        advance()
+    }
+
+    fun advance() {
+        val previous = _key
+        val wasPresent = present
+        present = items.hasNext()
+        if (!present) {
+            _value = null
+            _key = null
+            return
+        }
+
+        _value = items.next()
+        _key = commonKey(value)
         @Suppress("UNCHECKED_CAST")
-        changedByUs = oursByKey.entries
-            .map { it.value to theirsByKey[it.key] }
-            .filter {
-                val them = it.second
-                null != them && !equivalent(it.first, them)
+        check(!wasPresent || 0 > comparator.compare(previous as KEY, key)) {
+            "Not sorted by key: $previous then $key"
+        }
+    }
+}
+
+class Difference<KEY, OURS, THEIRS> internal constructor(
+    val addedByUs: List<OURS>,
+    val removedByUs: List<THEIRS>,
+    val changedByUs: List<Pair<OURS, THEIRS>>,
+) {
+    private constructor(classified: Classification<KEY, OURS, THEIRS>) :
+        this(classified.added, classified.removed, classified.changed)
+
+    constructor(
+        ourCommonKey: (OURS) -> KEY,
+        theirCommonKey: (THEIRS) -> KEY,
+        equivalent: (OURS, THEIRS) -> Boolean,
+        ours: Collection<OURS>,
+        theirs: Collection<THEIRS>,
+    ) : this(
+        Classification(ourCommonKey, theirCommonKey, equivalent, true)
+            .apply { classify(ours, theirs) }
+    )
+}
+
+/**
+ * Classifies each key in one pass over [ours], looking up and removing
+ * from a map of [theirs]: what remains of theirs was removed by us.  As
+ * with maps, the last item for a repeated key wins on either side, and a
+ * `null` item is present rather than missing.  With [collect] false, only
+ * counts.
+ */
+private class Classification<KEY, OURS, THEIRS>(
+    private val ourCommonKey: (OURS) -> KEY,
+    private val theirCommonKey: (THEIRS) -> KEY,
+    private val equivalent: (OURS, THEIRS) -> Boolean,
+    private val collect: Boolean,
+) {
+    val added = mutableListOf<OURS>()
+    val removed = mutableListOf<THEIRS>()
+    val changed = mutableListOf<Pair<OURS, THEIRS>>()
+    var addedCount = 0L
+    var removedCount = 0L
+    var changedCount = 0L
+
+    fun classify(ours: Collection<OURS>, theirs: Collection<THEIRS>) {
+        val theirsByKey = LinkedHashMap<KEY, THEIRS>(capacity(theirs.size))
+        for (them in theirs) theirsByKey[theirCommonKey(them)] = them
+
+        val oursByKey = LinkedHashMap<KEY, OURS>(capacity(ours.size))
+        for (us in ours) oursByKey[ourCommonKey(us)] = us
+
+        for ((key, us) in oursByKey) {
+            if (!theirsByKey.containsKey(key)) {
+                ++addedCount
+                if (collect) added += us
+                continue
             }
-            .toList() as List<Pair<OURS, THEIRS>>
+            // Not a null check: THEIRS may itself be nullable
+            @Suppress("UNCHECKED_CAST")
+            val them = theirsByKey.remove(key) as THEIRS
+            if (!equivalent(us, them)) {
+                ++changedCount
+                if (collect) changed += us to them
+            }
+        }
+
+        removedCount = theirsByKey.size.toLong()
+        if (collect) removed += theirsByKey.values
     }
 }
 
+/** Spreads so that partitions and samples use independent hash bits. */
+private fun spread(key: Any?) = (key.hashCode() * -0x61c88647).let {
+    it xor (it ushr 16)
+}
+
+private const val SAMPLE_BUCKETS = 1 shl 16
+
+private fun <KEY, T> partition(
+    items: Collection<T>,
+    n: Int,
+    cutoff: Int,
+    commonKey: (T) -> KEY,
+): List<List<T>> {
+    val partitions = List(n) { ArrayList<T>(items.size / n + 1) }
+    for (item in items) {
+        val hash = spread(commonKey(item))
+        if (SAMPLE_BUCKETS > cutoff && (hash and 0xFFFF) >= cutoff) continue
+        partitions[(hash ushr 16) % n] += item
+    }
+    return partitions
+}
+
+/** Concatenates into a list sized up front. */
+private fun <P, T> List<P>.concat(part: (P) -> List<T>): List<T> =
+    flatMapTo(ArrayList(sumOf { part(it).size }), part)
+
+private fun capacity(size: Int) = (size / 0.75f).toInt() + 1
+
 private data class Left(val key: String, val satelliteData: Int)
 
 private data class Right(val key: String, val satelliteData: String)
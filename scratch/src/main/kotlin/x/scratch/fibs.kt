@@ -2,6 +2,10 @@ package x.scratch
 
 import java.math.BigInteger
 import java.util.Objects.hash
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.atomic.AtomicReferenceArray
+import kotlin.system.measureTimeMillis
 
 fun main() {
     val fib0 = Fib(0)
@@ -39,6 +43,15 @@ fun main() {
     println()
     println("== SEQUENCE")
     for (n in -3..3) println(Fib(n).format())
+
+    println()
+    println("== FAST")
+    for (m in listOf(1_000_000, 10_000_000)) {
+        var bits: Int
+        val sequential = measureTimeMillis { bits = Fib(m).fib.bitLength() }
+        val parallel = measureTimeMillis { parallelFib(m) }
+        println("Fib($m) -> $bits bits; ${sequential}ms; parallel ${parallel}ms")
+    }
 }
 
 private fun Fib.format() =
@@ -78,10 +91,21 @@ class Fib internal constructor(
 fun Fib(n: Int): Fib = when {
     0 == n -> UNIT
     1 == n -> GENERATOR
-    0 < n -> fibN(n, n, UNIT)
+    0 < n -> fibN(n, parallel = false)
     else -> Fib(-n).unaryDiv()
 }
 
+/**
+ * Creates the [n]th Fibonacci matrix as [Fib], splitting the large
+ * multiplications across cores.  Worthwhile for [n] in the millions.
+ */
+fun parallelFib(n: Int): Fib = when {
+    0 == n -> UNIT
+    1 == n -> GENERATOR
+    0 < n -> fibN(n, parallel = true)
+    else -> parallelFib(-n).unaryDiv()
+}
+
 val Fib.fib get() = b
 
 /**
@@ -134,30 +158,96 @@ private val UNIT = Fib(0, 1.big, 0.big, 0.big, 1.big)
 private val GENERATOR = Fib(1, 0.big, 1.big, 1.big, 1.big)
 
 /**
- * @todo Note articles like
- *   <a href="https://dzone.com/articles/avoid-recursion"><cite>Avoid Recursion in ConcurrentHashMap.computeIfAbsent()</cite></a>,
- *   which remains true even now
- * @todo Replace with divide-and-conquer algo using memoization
+ * Caches `Fib(2^k)` for `k < POWER_CACHE_SIZE`, filled in as squaring first
+ * reaches each power.  Larger powers are not kept: `Fib(2^20)` alone holds
+ * ~90KB per entry.
+ *
+ * Slots rather than `ConcurrentHashMap.computeIfAbsent`, as squaring into
+ * the cache would recurse.  See
+ * <a href="https://dzone.com/articles/avoid-recursion"><cite>Avoid Recursion in ConcurrentHashMap.computeIfAbsent()</cite></a>.
+ */
+private const val POWER_CACHE_SIZE = 20
+private val POWERS = AtomicReferenceArray<Fib>(POWER_CACHE_SIZE).apply {
+    set(0, GENERATOR)
+}
+
+/** Below this many bits, products are not worth forking. */
+private const val PARALLEL_BITS = 1 shl 15
+
+/**
+ * Exponentiation by squaring: multiplies together the powers of two for
+ * each bit set in [n], so `O(log n)` matrix products rather than `O(n)`.
  */
-private tailrec fun fibN(
-    n: Int,
-    i: Int,
-    fib_i: Fib
-): Fib {
-    return if (0 == i) fib_i
-    else fibN(
-        n,
-        i - 1,
-        multiply0(n, fib_i)
+private fun fibN(n: Int, parallel: Boolean): Fib {
+    var fib = UNIT
+    var power = GENERATOR
+    var k = 0
+    var bits = n
+    while (true) {
+        if (1 == bits and 1)
+            fib = if (UNIT === fib) power else multiply(fib, power, parallel)
+        bits = bits ushr 1
+        if (0 == bits) return fib
+        power = powerOfTwo(++k, power, parallel)
+    }
+}
+
+private fun powerOfTwo(k: Int, half: Fib, parallel: Boolean): Fib {
+    if (POWER_CACHE_SIZE <= k) return square(half, parallel)
+    return POWERS[k] ?: square(half, parallel).also {
+        POWERS.compareAndSet(k, null, it)
+    }
+}
+
+/** Only the upper row is needed: Fib matrices are symmetric. */
+private fun multiply(left: Fib, right: Fib, parallel: Boolean): Fib {
+    val (ab, bd, bb, dd) = products(
+        parallel,
+        left.a to right.b,
+        left.b to right.d,
+        left.b to right.b,
+        left.d to right.d
     )
+    return fibOf(left.n + right.n, ab + bd, bb + dd)
 }
 
-private fun multiply0(n: Int, left: Fib) = Fib(
-    n,
-    left.a * GENERATOR.a + left.b * GENERATOR.c,
-    left.a * GENERATOR.b + left.b * GENERATOR.d,
-    left.c * GENERATOR.a + left.d * GENERATOR.c,
-    left.c * GENERATOR.b + left.d * GENERATOR.d
-)
+/**
+ * Fast doubling: `fib(2k) = fib(k) * (2 * fib(k+1) - fib(k))`, and
+ * `fib(2k+1) = fib(k)^2 + fib(k+1)^2`.
+ */
+private fun square(half: Fib, parallel: Boolean): Fib {
+    val b = half.b
+    val d = half.d
+    val (even, bb, dd) = products(
+        parallel,
+        b to (d.shiftLeft(1) - b),
+        b to b,
+        d to d
+    )
+    return fibOf(2 * half.n, even, bb + dd)
+}
+
+private fun fibOf(n: Int, fib: BigInteger, next: BigInteger) =
+    Fib(n, next - fib, fib, fib, next)
+
+/**
+ * Runs the products on the common fork-join pool when [parallel] and they
+ * are large enough to pay for it; the last runs on the calling thread.
+ */
+private fun products(
+    parallel: Boolean,
+    vararg factors: Pair<BigInteger, BigInteger>
+): List<BigInteger> {
+    if (!parallel || factors.all { (x, y) ->
+            PARALLEL_BITS > x.bitLength() + y.bitLength()
+        }) return factors.map { (x, y) -> x * y }
+
+    val forked = factors.dropLast(1).map { (x, y) ->
+        ForkJoinTask.adapt(Callable { x * y }).fork()
+    }
+    val (x, y) = factors.last()
+    val last = x * y
+    return forked.map { it.join() } + last
+}
 
 private val Int.big get() = toBigInteger()
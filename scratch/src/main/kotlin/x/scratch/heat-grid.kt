@@ -0,0 +1,302 @@
+package x.scratch
+
+import java.io.Closeable
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.FileChannel.MapMode.READ_ONLY
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.TRUNCATE_EXISTING
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveAction
+import kotlin.math.min
+import kotlin.random.Random
+
+/** How a [HeatGrid] treats the neighbors of cells at its edges. */
+sealed class Boundary {
+    /** No heat crosses edges: edge cells average only cells in the grid. */
+    object Insulated : Boundary() {
+        override fun toString() = "Insulated"
+    }
+
+    /** Beyond the edges is held at [temperature]. */
+    data class Fixed(val temperature: Int) : Boundary()
+
+    /** Each edge wraps around to the opposite edge. */
+    object Periodic : Boundary() {
+        override fun toString() = "Periodic"
+    }
+}
+
+/**
+ * The integer heat model of `heat.kt` on a grid of 1, 2, or 3 dimensions:
+ * each step averages a cell with its neighbors along each axis, rounding up
+ * at random in proportion to the remainder.
+ *
+ * Cells live in flat arrays, `x` fastest, swapped each step.  Steps split
+ * the grid into cache-sized tiles run as fork-join tasks.  Each tile first
+ * exchanges halos: copying its block and a one-cell border of neighboring
+ * cells into its own padded buffer, applying [boundary] at grid edges.  The
+ * stencil then runs over that buffer without bounds checks.
+ */
+class HeatGrid(
+    dimensions: IntArray,
+    private val boundary: Boundary,
+    private val random: Random,
+    init: (Int) -> Int,
+) {
+    val dimensions = dimensions.copyOf()
+    val rank = dimensions.size
+    private val nx: Int
+    private val ny: Int
+    private val nz: Int
+
+    init {
+        require(rank in 1..3) { "Not 1, 2, or 3 dimensions: $rank" }
+        require(dimensions.all { 2 <= it }) {
+            "Too few cells: ${dimensions.contentToString()}"
+        }
+        nx = dimensions[0]
+        ny = if (2 <= rank) dimensions[1] else 1
+        nz = if (3 <= rank) dimensions[2] else 1
+    }
+
+    val size = nx * ny * nz
+    private var current = IntArray(size, init)
+    private var next = IntArray(size)
+    private val tiles = tiles()
+
+    /** The cells as of the last step, `x` fastest: read, but do not keep. */
+    val cells: IntArray get() = current
+
+    operator fun get(x: Int, y: Int = 0, z: Int = 0) = current[index(x, y, z)]
+
+    var equilibrium = current.all { it == current[0] }
+        private set
+
+    fun step() {
+        val seeds = LongArray(tiles.size) { random.nextLong() }
+        if (1 == tiles.size) tiles[0].step(Random(seeds[0]))
+        else ForkJoinPool.commonPool().invoke(object : RecursiveAction() {
+            override fun compute() {
+                ForkJoinTask.invokeAll(tiles.mapIndexed { i, tile ->
+                    ForkJoinTask.adapt { tile.step(Random(seeds[i])) }
+                })
+            }
+        })
+
+        val swap = current
+        current = next
+        next = swap
+        equilibrium = tiles.minOf { it.low } == tiles.maxOf { it.high }
+    }
+
+    private fun index(x: Int, y: Int, z: Int) = (z * ny + y) * nx + x
+
+    private fun tiles(): List<Tile> {
+        val (tx, ty, tz) = TILES[rank - 1]
+        val tiles = mutableListOf<Tile>()
+        for (z in 0 until nz step tz)
+            for (y in 0 until ny step ty)
+                for (x in 0 until nx step tx)
+                    tiles += Tile(
+                        x, y, z,
+                        min(tx, nx - x), min(ty, ny - y), min(tz, nz - z)
+                    )
+        return tiles
+    }
+
+    /** Cells outside the grid, by [boundary]. */
+    private fun outside(x: Int, y: Int, z: Int) = when (boundary) {
+        is Boundary.Insulated -> 0 // Not counted, see [count]
+        is Boundary.Fixed -> boundary.temperature
+        is Boundary.Periodic -> current[
+            index(Math.floorMod(x, nx), Math.floorMod(y, ny),
+                Math.floorMod(z, nz))
+        ]
+    }
+
+    /** Insulated edge cells average fewer neighbors. */
+    private fun count(x: Int, y: Int, z: Int): Int {
+        if (Boundary.Insulated != boundary) return 2 * rank + 1
+        var count = 1
+        if (0 < x) ++count
+        if (nx - 1 > x) ++count
+        if (2 <= rank) {
+            if (0 < y) ++count
+            if (ny - 1 > y) ++count
+        }
+        if (3 <= rank) {
+            if (0 < z) ++count
+            if (nz - 1 > z) ++count
+        }
+        return count
+    }
+
+    private inner class Tile(
+        private val x0: Int,
+        private val y0: Int,
+        private val z0: Int,
+        private val w: Int,
+        private val h: Int,
+        private val d: Int,
+    ) {
+        private val padY = if (2 <= rank) 1 else 0
+        private val padZ = if (3 <= rank) 1 else 0
+        private val pw = w + 2
+        private val ph = h + 2 * padY
+        private val pd = d + 2 * padZ
+        private val padded = IntArray(pw * ph * pd)
+        private val sums = IntArray(w)
+        private val edge = 0 == x0 || nx == x0 + w ||
+            (2 <= rank && (0 == y0 || ny == y0 + h)) ||
+            (3 <= rank && (0 == z0 || nz == z0 + d))
+
+        var low = 0
+        var high = 0
+
+        fun step(random: Random) {
+            exchangeHalo()
+            stencil(random)
+        }
+
+        private fun exchangeHalo() {
+            for (pz in 0 until pd) {
+                val z = z0 + pz - padZ
+                for (py in 0 until ph) {
+                    val y = y0 + py - padY
+                    val row = (pz * ph + py) * pw
+                    if (y in 0 until ny && z in 0 until nz) {
+                        System.arraycopy(
+                            current, index(x0, y, z),
+                            padded, row + 1,
+                            w
+                        )
+                        padded[row] = cell(x0 - 1, y, z)
+                        padded[row + pw - 1] = cell(x0 + w, y, z)
+                    } else for (px in 0 until pw)
+                        padded[row + px] = outside(x0 + px - 1, y, z)
+                }
+            }
+        }
+
+        private fun cell(x: Int, y: Int, z: Int) =
+            if (x in 0 until nx) current[index(x, y, z)] else outside(x, y, z)
+
+        /** Sums each row first, in loops the JIT may vectorize. */
+        private fun stencil(random: Random) {
+            val padded = padded
+            val sums = sums
+            val next = next
+            val sy = pw
+            val sz = pw * ph
+            var low = Int.MAX_VALUE
+            var high = Int.MIN_VALUE
+            val full = 2 * rank + 1
+            for (z in 0 until d) for (y in 0 until h) {
+                val p = ((z + padZ) * ph + y + padY) * pw + 1
+                when (rank) {
+                    1 -> for (x in 0 until w)
+                        sums[x] = padded[p + x - 1] + padded[p + x] +
+                            padded[p + x + 1]
+                    2 -> for (x in 0 until w)
+                        sums[x] = padded[p + x - 1] + padded[p + x] +
+                            padded[p + x + 1] +
+                            padded[p + x - sy] + padded[p + x + sy]
+                    else -> for (x in 0 until w)
+                        sums[x] = padded[p + x - 1] + padded[p + x] +
+                            padded[p + x + 1] +
+                            padded[p + x - sy] + padded[p + x + sy] +
+                            padded[p + x - sz] + padded[p + x + sz]
+                }
+
+                val g = index(x0, y0 + y, z0 + z)
+                for (x in 0 until w) {
+                    val count =
+                        if (edge) count(x0 + x, y0 + y, z0 + z) else full
+                    val cell = random.middle(sums[x], count)
+                    next[g + x] = cell
+                    if (cell < low) low = cell
+                    if (cell > high) high = cell
+                }
+            }
+            this.low = low
+            this.high = high
+        }
+    }
+}
+
+/** Tile extents by rank, about 32Ki cells apiece. */
+private val TILES = listOf(
+    Triple(1 shl 15, 1, 1),
+    Triple(256, 128, 1),
+    Triple(32, 32, 32),
+)
+
+/** Averages, rounding up at random in proportion to the remainder. */
+internal fun Random.middle(sum: Int, count: Int) =
+    sum / count + if (nextInt(0, count) < sum % count) 1 else 0
+
+/**
+ * Streams every [every]th frame of [grid] to [path] for offline analysis:
+ * a header of the rank and dimensions, then for each frame the step and
+ * the cells, all as big-endian ints.  See [forEachSnapshot].
+ */
+class SnapshotWriter(
+    path: Path,
+    private val grid: HeatGrid,
+    private val every: Int,
+) : Closeable {
+    private val channel =
+        FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING)
+    private val frame =
+        ByteBuffer.allocateDirect(Int.SIZE_BYTES * (1 + grid.size))
+
+    init {
+        require(0 < every) { "Not positive: $every" }
+        val header = ByteBuffer.allocate(Int.SIZE_BYTES * (1 + grid.rank))
+        header.putInt(grid.rank)
+        grid.dimensions.forEach { header.putInt(it) }
+        writeFully(header.flip())
+    }
+
+    /** Writes the grid as of [step], if a `k`th frame. */
+    fun frame(step: Int) {
+        if (0 != step % every) return
+        frame.clear()
+        frame.putInt(step)
+        frame.asIntBuffer().put(grid.cells)
+        writeFully(frame.position(0))
+    }
+
+    override fun close() = channel.close()
+
+    private fun writeFully(buffer: ByteBuffer) {
+        while (buffer.hasRemaining()) channel.write(buffer)
+    }
+}
+
+class Snapshot(
+    val step: Int,
+    val dimensions: IntArray,
+    val cells: IntArray,
+)
+
+/** Reads back the frames written by [SnapshotWriter], in order. */
+fun forEachSnapshot(path: Path, block: (Snapshot) -> Unit) {
+    FileChannel.open(path, READ).use { channel ->
+        val mapped = channel.map(READ_ONLY, 0L, channel.size())
+        val dimensions = IntArray(mapped.int) { mapped.int }
+        val size = dimensions.fold(1, Int::times)
+        while (mapped.hasRemaining()) {
+            val step = mapped.int
+            val cells = IntArray(size)
+            mapped.asIntBuffer().get(cells)
+            mapped.position(mapped.position() + Int.SIZE_BYTES * size)
+            block(Snapshot(step, dimensions, cells))
+        }
+    }
+}
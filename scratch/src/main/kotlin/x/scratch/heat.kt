@@ -1,11 +1,20 @@
 package x.scratch
 
+import x.scratch.Boundary.Fixed
+import x.scratch.Boundary.Insulated
+import x.scratch.Boundary.Periodic
+import x.scratch.Run.LARGE_1D
+import x.scratch.Run.LARGE_2D
+import x.scratch.Run.LARGE_3D
 import x.scratch.Run.MANY_BELL_CURVE
 import x.scratch.Run.ONCE_HOT_COLD
 import x.scratch.Run.ONCE_RANDOM
-import kotlin.math.absoluteValue
+import java.nio.file.Files.createTempFile
+import java.util.stream.Collectors.toList
+import java.util.stream.IntStream
 import kotlin.random.Random
 import kotlin.system.exitProcess
+import kotlin.system.measureTimeMillis
 
 private val run = MANY_BELL_CURVE
 private const val graph = true
@@ -13,27 +22,39 @@ private const val n = 20
 private const val max = 9
 private const val cutoff = 10000
 private const val trials = 100
+private const val largeSteps = 1_000
 
 private enum class Run {
     ONCE_RANDOM,
     ONCE_HOT_COLD,
-    MANY_BELL_CURVE
+    MANY_BELL_CURVE,
+    LARGE_1D,
+    LARGE_2D,
+    LARGE_3D,
 }
 
 /**
  * Modelling numerical approximation of the heat equation with integers.
  * Important note: This does not use a correct adjustment to each point as it
  * steps through time: it uses a simple 3-point average.
+ *
+ * The large runs step [HeatGrid] in more dimensions, where the average is
+ * of each cell and its neighbors along every axis.
  */
 fun main() {
     when (run) {
-        ONCE_RANDOM -> printSummary(runOnce(randomInit(), printStep()))
-        ONCE_HOT_COLD -> printSummary(runOnce(hotColdInit(), printStep()))
+        ONCE_RANDOM ->
+            printSummary(runOnce(randomInit(Random), Random, printStep()))
+        ONCE_HOT_COLD ->
+            printSummary(runOnce(hotColdInit(), Random, printStep()))
         MANY_BELL_CURVE -> runTrials()
+        LARGE_1D -> runLarge(intArrayOf(1_000_000), Insulated)
+        LARGE_2D -> runLarge(intArrayOf(1_000, 1_000), Fixed(0))
+        LARGE_3D -> runLarge(intArrayOf(100, 100, 100), Periodic)
     }
 }
 
-private typealias ReportProgress = (Int, List<Int>) -> Unit
+private typealias ReportProgress = (Int, IntArray) -> Unit
 
 private data class RunResult(
     val stepsNeeded: Int,
@@ -42,31 +63,40 @@ private data class RunResult(
 )
 
 private fun runOnce(
-    init: List<Int>,
+    init: IntArray,
+    random: Random,
     reportProgress: ReportProgress
 ): RunResult {
-    val initAverage = init.average()
-    var step: List<Int> = init
+    val initAverage = random.middle(init.sum(), init.size)
+    val model = HeatGrid(intArrayOf(init.size), Insulated, random) {
+        init[it]
+    }
     var nSteps = 0
 
-    reportProgress(nSteps, step)
-    while (!step.equilibrium()) {
+    reportProgress(nSteps, model.cells)
+    while (!model.equilibrium) {
         ++nSteps
         avoidRunningAway(nSteps)
-        step = step.nextStep()
-        reportProgress(nSteps, step)
+        model.step()
+        reportProgress(nSteps, model.cells)
     }
-    val equilibrium = step[0]
+    val equilibrium = model.cells[0]
 
     return RunResult(nSteps, initAverage, equilibrium)
 }
 
+/** Trials run in parallel, each with its own random stream. */
 private fun runTrials() {
+    val seeds = LongArray(trials) { Random.nextLong() }
+    val results = IntStream.range(0, trials).parallel().mapToObj {
+        val random = Random(seeds[it])
+        runOnce(randomInit(random), random) { _, _ -> }
+    }.collect(toList())
+
     var rose = 0
     var stayed = 0
     var fell = 0
-    repeat(trials) {
-        val (_, initAverage, equilibrium) = runOnce(randomInit()) { _, _ -> }
+    results.forEach { (_, initAverage, equilibrium) ->
         when {
             initAverage < equilibrium -> ++rose
             initAverage == equilibrium -> ++stayed
@@ -76,25 +106,33 @@ private fun runTrials() {
     println("ROSE: $rose, STAYED: $stayed, FELL: $fell")
 }
 
-private fun randomInit(): List<Int> {
-    val init = ArrayList<Int>(n)
-    repeat(n) {
-        init.add(Random.nextInt(0, max + 1).absoluteValue)
-    }
-    return init
-}
-
-private fun hotColdInit(): List<Int> {
-    val init = ArrayList<Int>(n)
-    repeat(n / 2) {
-        init.add(9)
+/** Times a large grid, saving every 100th frame to a temporary file. */
+private fun runLarge(dimensions: IntArray, boundary: Boundary) {
+    val random = Random(Random.nextLong())
+    val grid = HeatGrid(dimensions, boundary, random) {
+        random.nextInt(0, max + 1)
     }
-    repeat(n / 2 + n % 2) {
-        init.add(0)
+    val snapshots = createTempFile("heat", ".snapshots")
+    val millis = measureTimeMillis {
+        SnapshotWriter(snapshots, grid, 100).use { writer ->
+            writer.frame(0)
+            for (step in 1..largeSteps) {
+                grid.step()
+                writer.frame(step)
+            }
+        }
     }
-    return init
+    println(
+        "$largeSteps STEPS OF ${dimensions.joinToString("x")} CELLS" +
+            " ($boundary) IN ${millis}ms; SNAPSHOTS IN $snapshots"
+    )
 }
 
+private fun randomInit(random: Random) =
+    IntArray(n) { random.nextInt(0, max + 1) }
+
+private fun hotColdInit() = IntArray(n) { if (it < n / 2) 9 else 0 }
+
 private fun avoidRunningAway(nSteps: Int) {
     if (nSteps >= cutoff) {
         println("MORE THAN $cutoff STEPS NEEDED")
@@ -102,44 +140,13 @@ private fun avoidRunningAway(nSteps: Int) {
     }
 }
 
-private fun List<Int>.equilibrium(): Boolean {
-    val first = first()
-    return all { it == first }
-}
-
-private fun List<Int>.average() = middle(*(this.toIntArray()))
-
-private fun List<Int>.nextStep(): List<Int> {
-    val updated = ArrayList<Int>(size)
-    updated.add(middle(first(), second()))
-    (1..size - 2).forEach {
-        updated.add(middle(preceding(it), current(it), following(it)))
-    }
-    updated.add(middle(penultimate(), last()))
-    return updated
-}
-
-private fun List<Int>.second() = this[1]
-private fun List<Int>.penultimate() = this[size - 2]
-private fun List<Int>.preceding(i: Int) = this[i - 1]
-private fun List<Int>.current(i: Int) = this[i]
-private fun List<Int>.following(i: Int) = this[i + 1]
-
-private fun middle(vararg xs: Int): Int {
-    infix fun Int.outOf(base: Int) =
-        if (Random.nextInt(0, base) < this) 1 else 0
-
-    val sum = xs.sum()
-    return sum / xs.size + (sum % xs.size outOf xs.size)
-}
-
-private fun printStep(): (Int, List<Int>) -> Unit {
+private fun printStep(): ReportProgress {
     return { nSteps, stepValues ->
         if (graph) {
             println("$nSteps:")
-            graphDifferences(stepValues)
+            graphDifferences(stepValues.asList())
         } else
-            println("$nSteps: $stepValues")
+            println("$nSteps: ${stepValues.contentToString()}")
     }
 }
 
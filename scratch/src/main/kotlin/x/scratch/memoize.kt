@@ -1,7 +1,11 @@
 package x.scratch
 
 import x.scratch.MemoizedFactorial.Companion.factorial
-import java.util.concurrent.ConcurrentHashMap
+import java.time.Duration
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.math.max
 import kotlin.system.measureNanoTime
 
 /** See https://jorgecastillo.dev/kotlin-purity-and-function-memoization */
@@ -41,6 +45,17 @@ fun main() {
     println("MEMOIZED -> Fib(10) -> EXPECT (nanos, 55) -> ${
     measureNanoTime { answer = mfib(10) } to answer
     }")
+
+    println()
+    println("BOUNDED")
+    lateinit var bfib: Memoized1<Long, Long>
+    bfib = { n: Long ->
+        if (2 > n) n else bfib(n - 1) + bfib(n - 2)
+    }.memoize(MemoConfig(maximumSize = 16, eviction = Eviction.LRU))
+    println("MEMOIZED -> Fib(90) -> EXPECT (nanos, 2880067194370816120) -> ${
+    measureNanoTime { answer = bfib(90) } to answer
+    }")
+    println("STATS -> ${bfib.stats}")
 }
 
 private class MemoizedFactorial : (Long, Long) -> Long {
@@ -70,26 +85,261 @@ private class MemoizedFactorial : (Long, Long) -> Long {
     }
 }
 
-private class Memoize1<in T, out R>(
-    private val f: (T) -> R
-) : (T) -> R {
-    private val cache = ConcurrentHashMap<T, R>()
+/** How a full [Memo] chooses what to drop. */
+enum class Eviction {
+    /** Drops the least recently used. */
+    LRU,
 
-    override fun invoke(t: T): R = cache.getOrPut(t) {
-        f(t)
+    /**
+     * [W-TinyLFU](https://arxiv.org/abs/1512.00727): new entries wait in a
+     * small LRU window, then join the main LRU only if looked up more often
+     * than its least recently used.  Resists scans flushing popular keys.
+     */
+    TINY_LFU,
+}
+
+data class MemoConfig(
+    val maximumSize: Int = 10_000,
+    /** Entries older than this are recomputed; `null` never expires. */
+    val expireAfterWrite: Duration? = null,
+    val eviction: Eviction = Eviction.TINY_LFU,
+    /** Nanoseconds for expiry, replaceable for testing. */
+    val ticker: () -> Long = System::nanoTime,
+) {
+    init {
+        require(0 < maximumSize) { "Not positive: $maximumSize" }
     }
 }
 
-private fun <T, R> ((T) -> R).memoize() = Memoize1(this)
+data class MemoStats(val hits: Long, val misses: Long, val evictions: Long) {
+    val hitRate
+        get() = if (0L == hits + misses) 0.0
+        else hits.toDouble() / (hits + misses)
+}
+
+/**
+ * A bounded cache of [compute] by key.  Keys for several arguments are
+ * composite, see [memoize].
+ *
+ * Computing holds no lock, so [compute] may safely call back into the same
+ * memo, as recursive functions do.  Under contention two callers may both
+ * compute a missing key; the later result replaces the earlier.
+ */
+class Memo<K, V>(
+    private val config: MemoConfig = MemoConfig(),
+    private val compute: (K) -> V
+) {
+    private val lock = ReentrantLock()
+    private val window = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+    private val main = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+    private val windowSize: Int
+    private val mainSize: Int
+    private val sketch: FrequencySketch?
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+    private val evictions = LongAdder()
 
-private class Memoize2<in T, in U, out R>(
-    private val f: (T, U) -> R
-) : (T, U) -> R {
-    private val cache = ConcurrentHashMap<T, R>()
+    init {
+        if (Eviction.LRU == config.eviction) {
+            windowSize = config.maximumSize
+            mainSize = 0
+            sketch = null
+        } else {
+            windowSize = max(1, config.maximumSize / 100)
+            mainSize = config.maximumSize - windowSize
+            sketch = FrequencySketch(config.maximumSize)
+        }
+    }
+
+    val size get() = lock.withLock { window.size + main.size }
 
-    override fun invoke(t: T, u: U): R = cache.getOrPut(t) {
-        f(t, u)
+    val stats
+        get() = MemoStats(hits.sum(), misses.sum(), evictions.sum())
+
+    operator fun get(key: K): V {
+        lock.withLock { lookup(key) }?.let {
+            hits.increment()
+            return it.value
+        }
+
+        misses.increment()
+        val value = compute(key) // Unlocked: compute may recurse
+        lock.withLock { insert(key, Entry(value, config.ticker())) }
+        return value
     }
+
+    private fun lookup(key: K): Entry<V>? {
+        sketch?.increment(key)
+        val entry = window[key] ?: main[key] ?: return null
+        if (!entry.expired) return entry
+
+        window.remove(key) ?: main.remove(key)
+        evictions.increment()
+        return null
+    }
+
+    private fun insert(key: K, entry: Entry<V>) {
+        when (key) {
+            in window -> window[key] = entry
+            in main -> main[key] = entry
+            else -> {
+                window[key] = entry
+                if (windowSize < window.size) admit(window.removeEldest())
+            }
+        }
+    }
+
+    /** Moves [candidate] from the window to main, or drops it. */
+    private fun admit(candidate: Pair<K, Entry<V>>) {
+        val (key, entry) = candidate
+        if (main.size < mainSize) {
+            main[key] = entry
+            return
+        }
+
+        evictions.increment()
+        if (0 == mainSize) return
+        val victim = main.keys.first()
+        if (sketch!!.frequency(key) > sketch.frequency(victim)) {
+            main.remove(victim)
+            main[key] = entry
+        }
+    }
+
+    private val Entry<V>.expired
+        get() = null != config.expireAfterWrite &&
+            config.ticker() - written >= config.expireAfterWrite.toNanos()
+
+    private class Entry<out V>(val value: V, val written: Long)
+}
+
+private fun <K, V> LinkedHashMap<K, V>.removeEldest(): Pair<K, V> {
+    val eldest = entries.iterator()
+    val (key, value) = eldest.next()
+    eldest.remove()
+    return key to value
+}
+
+/**
+ * Approximate access counts in a count-min sketch of 4-bit counters, halved
+ * periodically so old popularity fades.
+ */
+private class FrequencySketch(maximumSize: Int) {
+    private val width = Integer.highestOneBit(
+        (COUNTERS_PER_ENTRY * maximumSize.toLong())
+            .coerceIn(MIN_WIDTH, MAX_WIDTH).toInt() * 2 - 1
+    )
+    private val rows = Array(SEEDS.size) { ByteArray(width) }
+    private val sampleSize = 10L * maximumSize
+    private var additions = 0L
+
+    fun increment(key: Any?) {
+        val hash = key.hashCode()
+        SEEDS.forEachIndexed { row, seed ->
+            val counters = rows[row]
+            val i = index(hash, seed)
+            if (MAX_COUNT > counters[i]) ++counters[i]
+        }
+        if (sampleSize <= ++additions) reset()
+    }
+
+    fun frequency(key: Any?): Int {
+        val hash = key.hashCode()
+        return SEEDS.indices.minOf { row ->
+            rows[row][index(hash, SEEDS[row])].toInt()
+        }
+    }
+
+    private fun index(hash: Int, seed: Int): Int {
+        val mixed = (hash + seed) * seed
+        return (mixed xor (mixed ushr 16)) and (width - 1)
+    }
+
+    private fun reset() {
+        rows.forEach { counters ->
+            counters.indices.forEach {
+                counters[it] = (counters[it].toInt() shr 1).toByte()
+            }
+        }
+        additions /= 2
+    }
+
+    companion object {
+        private const val COUNTERS_PER_ENTRY = 4
+        private const val MIN_WIDTH = 16L
+        private const val MAX_WIDTH = 1L shl 24
+        private const val MAX_COUNT: Byte = 15
+        private val SEEDS = intArrayOf(
+            0x9E3779B9.toInt(),
+            0x85EBCA6B.toInt(),
+            0xC2B2AE35.toInt(),
+            0x27D4EB2F
+        )
+    }
+}
+
+class Memoized1<in T, out R>(
+    f: (T) -> R,
+    config: MemoConfig
+) : (T) -> R {
+    private val memo = Memo<T, R>(config, f)
+
+    val stats get() = memo.stats
+
+    override fun invoke(t: T): R = memo[t]
+}
+
+fun <T, R> ((T) -> R).memoize(config: MemoConfig = MemoConfig()) =
+    Memoized1(this, config)
+
+/** Keys on both arguments together. */
+class Memoized2<in T, in U, out R>(
+    f: (T, U) -> R,
+    config: MemoConfig
+) : (T, U) -> R {
+    private val memo = Memo<Pair<T, U>, R>(config) { (t, u) -> f(t, u) }
+
+    val stats get() = memo.stats
+
+    override fun invoke(t: T, u: U): R = memo[t to u]
+}
+
+fun <T, U, R> ((T, U) -> R).memoize(config: MemoConfig = MemoConfig()) =
+    Memoized2(this, config)
+
+/** Keys on all three arguments together. */
+class Memoized3<in T, in U, in V, out R>(
+    f: (T, U, V) -> R,
+    config: MemoConfig
+) : (T, U, V) -> R {
+    private val memo =
+        Memo<Triple<T, U, V>, R>(config) { (t, u, v) -> f(t, u, v) }
+
+    val stats get() = memo.stats
+
+    override fun invoke(t: T, u: U, v: V): R = memo[Triple(t, u, v)]
+}
+
+fun <T, U, V, R> ((T, U, V) -> R).memoize(
+    config: MemoConfig = MemoConfig()
+) = Memoized3(this, config)
+
+/**
+ * Memoizes functions of any arity, keyed on the list of arguments:
+ * `val f = memoizeVararg { args -> ... }; f(1, "b", 3L)`.
+ */
+class MemoizedVararg<out R>(
+    f: (List<Any?>) -> R,
+    config: MemoConfig
+) {
+    private val memo = Memo(config, f)
+
+    val stats get() = memo.stats
+
+    operator fun invoke(vararg args: Any?): R = memo[args.toList()]
 }
 
-private fun <T, U, R> ((T, U) -> R).memoize() = Memoize2(this)
+fun <R> memoizeVararg(
+    config: MemoConfig = MemoConfig(),
+    f: (List<Any?>) -> R
+) = MemoizedVararg(f, config)
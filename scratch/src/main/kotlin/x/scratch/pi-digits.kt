@@ -0,0 +1,236 @@
+package x.scratch
+
+import java.io.IOException
+import java.math.BigInteger
+import java.math.BigInteger.ONE
+import java.math.BigInteger.TEN
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.FileChannel.MapMode.READ_ONLY
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveTask
+import kotlin.math.max
+import kotlin.system.measureTimeMillis
+
+fun main() {
+    for (count in listOf(100_000, 1_000_000)) {
+        var digits: PiDigits
+        val millis = measureTimeMillis { digits = PiDigits.atLeast(count) }
+        println("PI DIGITS -> ${digits.size} in ${millis}ms")
+    }
+}
+
+/**
+ * The decimal digits of PI, starting with the leading "3", packed two to a
+ * byte with the earlier digit in the high nibble.
+ *
+ * Digits come in blocks from [Chudnovsky binary splitting](https://en.wikipedia.org/wiki/Chudnovsky_algorithm),
+ * split across the common fork-join pool, and are cached in a
+ * memory-mapped file reused across runs.  The file defaults to
+ * `x-scratch-pi-digits` in the temporary directory; set the
+ * `x.scratch.pi.cache` system property to move it.
+ */
+class PiDigits private constructor(
+    val size: Int,
+    private val packed: ByteBuffer
+) {
+    operator fun get(index: Int): Int {
+        if (0 > index || size <= index)
+            throw IndexOutOfBoundsException("Index: $index, Size: $size")
+        val pair = packed.get(index / 2).toInt()
+        return if (0 == index % 2) (pair shr 4) and 0xF else pair and 0xF
+    }
+
+    /** The packed digits as a read-only buffer: `(size + 1) / 2` bytes. */
+    fun packed(): ByteBuffer = packed.asReadOnlyBuffer()
+
+    override fun toString() = "PiDigits($size)"
+
+    companion object {
+        @Volatile
+        private var cached: PiDigits? = null
+
+        private val cache: Path
+            get() = Path.of(
+                System.getProperty(
+                    "x.scratch.pi.cache",
+                    "${System.getProperty("java.io.tmpdir")}/x-scratch-pi-digits"
+                )
+            )
+
+        /**
+         * Finds at least [count] digits: in memory, else in the cache file,
+         * else computed afresh.  Computing grows in blocks, at least doubling
+         * the digits on hand, so sequential readers recompute rarely.
+         */
+        fun atLeast(count: Int): PiDigits {
+            require(count <= MAX_DIGITS) { "Too many digits: $count" }
+            cached?.let { if (count <= it.size) return it }
+
+            return synchronized(this) {
+                val current = cached ?: load()
+                if (null != current && count <= current.size) {
+                    cached = current
+                    current
+                } else {
+                    val size = max(count, 2 * (current?.size ?: 0))
+                        .coerceIn(MIN_BLOCK, MAX_DIGITS)
+                    store(pack(size, chudnovsky(size + GUARD_DIGITS)))
+                        .also { cached = it }
+                }
+            }
+        }
+
+        /**
+         * Maps the digits in [path], or `null` for a cache miss: no file, or
+         * one truncated or with a header not matching its length.
+         */
+        internal fun load(path: Path = cache): PiDigits? = try {
+            FileChannel.open(path, READ).use { channel ->
+                if (channel.size() < HEADER_BYTES) return null
+                val mapped = channel.map(READ_ONLY, 0L, channel.size())
+                val size = mapped.getInt(0)
+                if (size !in 0..MAX_DIGITS ||
+                    HEADER_BYTES + (size + 1L) / 2L != channel.size()
+                ) null
+                else PiDigits(size, mapped.position(HEADER_BYTES).slice())
+            }
+        } catch (e: IOException) {
+            null
+        }
+
+        /** Replaces the cache file whole, so readers never see a partial one. */
+        private fun store(digits: PiDigits): PiDigits = try {
+            val temp = Files.createTempFile(
+                cache.toAbsolutePath().parent,
+                "${cache.fileName}",
+                ".tmp"
+            )
+            FileChannel.open(temp, WRITE).use { channel ->
+                val header = ByteBuffer.allocate(HEADER_BYTES)
+                header.putInt(0, digits.size)
+                channel.write(arrayOf(header, digits.packed()))
+            }
+            Files.move(temp, cache, ATOMIC_MOVE, REPLACE_EXISTING)
+            load() ?: digits
+        } catch (e: IOException) {
+            digits
+        }
+
+        private fun pack(size: Int, digits: String): PiDigits {
+            val packed = ByteArray((size + 1) / 2)
+            for (i in 0 until size) {
+                val digit = digits[i] - '0'
+                val j = i / 2
+                packed[j] = (packed[j].toInt() or
+                    if (0 == i % 2) digit shl 4 else digit).toByte()
+            }
+            return PiDigits(size, ByteBuffer.wrap(packed))
+        }
+    }
+}
+
+private const val HEADER_BYTES = Int.SIZE_BYTES
+private const val MIN_BLOCK = 1 shl 14
+private const val MAX_DIGITS = 1 shl 30
+
+/** Truncation only disturbs the last digits, barring a run of 9s. */
+private const val GUARD_DIGITS = 32
+
+/** Each term of the Chudnovsky series adds ~14.18 digits. */
+private const val DIGITS_PER_TERM = 14
+
+private const val SMALL_SQRT_BITS = 1 shl 10
+
+/** Below this many terms, splitting is not worth forking. */
+private const val SERIAL_TERMS = 512
+
+private val SERIES_A = 13_591_409.toBigInteger()
+private val SERIES_B = 545_140_134.toBigInteger()
+private val C3_OVER_24 = 10_939_058_860_032_000.toBigInteger()
+
+/**
+ * Computes `PI * 10^digits` as a string of `digits + 1` decimals: `PI =
+ * 426880 * sqrt(10005) * Q / T`, with `Q` and `T` from binary splitting.
+ */
+private fun chudnovsky(digits: Int): String {
+    val one = TEN.pow(digits)
+    val sqrt = ForkJoinTask.adapt(Callable {
+        sqrt(one * one * 10_005.toBigInteger())
+    }).fork()
+    val terms = digits / DIGITS_PER_TERM + 2L
+    val (_, q, t) = ForkJoinPool.commonPool().invoke(Split(0L, terms))
+
+    return (q * 426_880.toBigInteger() * sqrt.join() / t).toString()
+}
+
+private class Split(
+    private val a: Long,
+    private val b: Long
+) : RecursiveTask<Terms>() {
+    override fun compute(): Terms {
+        if (SERIAL_TERMS >= b - a) return split(a, b)
+
+        val m = (a + b) / 2
+        val left = Split(a, m).fork()
+        val right = Split(m, b).compute()
+        return merge(left.join(), right)
+    }
+
+    /** The top merges dominate, so fork their products as well. */
+    private fun merge(left: Terms, right: Terms): Terms {
+        val p = ForkJoinTask.adapt(Callable { left.p * right.p }).fork()
+        val q = ForkJoinTask.adapt(Callable { left.q * right.q }).fork()
+        val t = right.q * left.t + left.p * right.t
+        return Terms(p.join(), q.join(), t)
+    }
+}
+
+/** The partial products `P(a, b)`, `Q(a, b)`, and sum `T(a, b)`. */
+private data class Terms(
+    val p: BigInteger,
+    val q: BigInteger,
+    val t: BigInteger
+) {
+    operator fun plus(right: Terms) =
+        Terms(p * right.p, q * right.q, right.q * t + p * right.t)
+}
+
+private fun split(a: Long, b: Long): Terms =
+    if (1L == b - a) term(a)
+    else ((a + b) / 2).let { m -> split(a, m) + split(m, b) }
+
+private fun term(a: Long): Terms {
+    if (0L == a) return Terms(ONE, ONE, SERIES_A)
+
+    val p = (6 * a - 5).toBigInteger() *
+        (2 * a - 1).toBigInteger() *
+        (6 * a - 1).toBigInteger()
+    val q = a.toBigInteger().pow(3) * C3_OVER_24
+    val t = p * (SERIES_A + SERIES_B * a.toBigInteger())
+    return Terms(p, q, if (0L == a % 2) t else -t)
+}
+
+/**
+ * Integer square root by one Newton step from the root of the upper half,
+ * recursively.  `BigInteger.sqrt` instead iterates at full precision, and
+ * would dominate computing the digits.
+ */
+private fun sqrt(n: BigInteger): BigInteger {
+    if (SMALL_SQRT_BITS >= n.bitLength()) return n.sqrt()
+
+    val shift = n.bitLength() / 4
+    var root = sqrt(n shr 2 * shift) shl shift
+    root = (root + n / root) shr 1
+    while (root * root > n) root -= ONE
+    while ((root + ONE).let { it * it } <= n) root += ONE
+    return root
+}
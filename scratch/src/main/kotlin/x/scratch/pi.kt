@@ -1,17 +1,18 @@
 package x.scratch
 
-import x.scratch.Pi.Companion.generatePiDigits
-import java.lang.System.arraycopy
-import java.math.BigInteger
-import java.math.BigInteger.ONE
-import java.math.BigInteger.TEN
-import java.math.BigInteger.TWO
-import java.math.BigInteger.ZERO
+import kotlin.math.min
 
 fun main() {
     val name = "BKO" // TODO: Ố in Oxley, ie, UNICODE
     println(name)
     println(findInPi(name))
+
+    println()
+    println("== ALL TWO LETTERS")
+    val pairs = ('A'..'Z').flatMap { a -> ('A'..'Z').map { b -> "$a$b" } }
+    var last = ""
+    val found = findInPi(pairs) { pair, _ -> last = pair }
+    println("FOUND ${found.size}; LAST $last AT ${found[last]}")
 }
 
 /**
@@ -28,26 +29,56 @@ fun main() {
  * within PI, however finding the position may exhaust your patience, and some
  * strings will not be found before the heat death of the Universe.
  */
-fun findInPi(str: String): Int {
-    val digits = toDigits(str)
-
-    val piBuf = IntArray(digits.size)
-    val pi = generatePiDigits()
-    val piIt = pi.iterator()
-    for (i in digits.indices) {
-        piBuf[i] = piIt.next()
-    }
+fun findInPi(str: String): Int = findInPi(listOf(str)).getValue(str)
 
-    var i = 0
-    while (true) {
-        if (digits.contentEquals(piBuf)) return i
+/**
+ * Finds the first positions of many strings in one pass over the digits of
+ * PI, each as for `findInPi(String)`.  Calls [found] with each string as it
+ * is first found; strings not found in the first [limit] digits are missing
+ * from the result.
+ *
+ * Scans the packed digits with an
+ * [Aho–Corasick](https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm)
+ * automaton, so each digit costs the same however many strings.
+ */
+fun findInPi(
+    strs: Collection<String>,
+    limit: Int = Int.MAX_VALUE,
+    found: (String, Int) -> Unit = { _, _ -> }
+): Map<String, Int> {
+    val patterns = strs.distinct()
+    val lengths = IntArray(patterns.size)
+    val search = DigitSearch(
+        patterns.mapIndexed { id, str ->
+            toDigits(str).also { lengths[id] = it.size }
+        })
+    val positions = LinkedHashMap<String, Int>()
+    fun report(id: Int, position: Int) {
+        val str = patterns[id]
+        if (null == positions.putIfAbsent(str, position)) found(str, position)
+    }
 
-        // Shift contents left by 1, and fill in the end with next digit
-        arraycopy(piBuf, 1, piBuf, 0, piBuf.size - 1)
-        piBuf[piBuf.size - 1] = piIt.next()
+    patterns.forEachIndexed { id, str -> if (str.isEmpty()) report(id, 0) }
 
-        ++i
+    var digits = PiDigits.atLeast(0)
+    var state = 0
+    var i = 0
+    while (positions.size < patterns.size && i < limit) {
+        if (digits.size == i) digits = PiDigits.atLeast(i + 1)
+        val packed = digits.packed()
+        val end = min(digits.size, limit)
+        while (positions.size < patterns.size && i < end) {
+            val pair = packed.get(i / 2).toInt()
+            val digit = if (0 == i % 2) (pair shr 4) and 0xF else pair and 0xF
+            state = search.next(state, digit)
+            search.forEachEnding(state) { id ->
+                report(id, i - lengths[id] + 1)
+            }
+            ++i
+        }
     }
+
+    return positions
 }
 
 private fun toDigits(char: Int): Array<Int> {
@@ -61,6 +92,7 @@ private fun toDigits(str: String): IntArray {
     var j = 0
     str.forEach { ch ->
         val c = ch.toUpperCase()
+        require(c in 'A'..'Z') { "Not a Latin letter: $ch in $str" }
         val i = c.toInt() - Apos
         toDigits(i).forEach {
             array[j++] = it
@@ -69,10 +101,86 @@ private fun toDigits(str: String): IntArray {
     return array.sliceArray(0 until j)
 }
 
-private val THREE: BigInteger = BigInteger.valueOf(3)
-private val FOUR: BigInteger = BigInteger.valueOf(4)
-private val SEVEN: BigInteger = BigInteger.valueOf(7)
+private const val RADIX = 10
+
+/**
+ * A multi-pattern automaton over decimal digits, with failure links folded
+ * into the transitions so each digit is one array read.
+ */
+private class DigitSearch(patterns: List<IntArray>) {
+    /** Transitions: the state after `state` reads `digit` is at `RADIX * state + digit`. */
+    private val next: IntArray
+
+    /** The patterns ending at each state, by index. */
+    private val ends: Array<IntArray>
+
+    /** The nearest shorter suffix state with patterns ending, else -1. */
+    private val links: IntArray
+
+    init {
+        val capacity = 1 + patterns.sumBy { it.size }
+        val next = IntArray(RADIX * capacity) { -1 }
+        val ends = Array(capacity) { NONE }
+        var states = 1
+        patterns.forEachIndexed { id, pattern ->
+            if (pattern.isEmpty()) return@forEachIndexed
+            var state = 0
+            pattern.forEach { digit ->
+                val at = RADIX * state + digit
+                if (-1 == next[at]) next[at] = states++
+                state = next[at]
+            }
+            ends[state] = ends[state] + id
+        }
+
+        // Breadth-first, so shorter suffixes are done before longer
+        val fails = IntArray(states)
+        val links = IntArray(states) { -1 }
+        val queue = IntArray(states)
+        var head = 0
+        var tail = 0
+        for (digit in 0 until RADIX)
+            if (-1 == next[digit]) next[digit] = 0
+            else queue[tail++] = next[digit]
+        while (head < tail) {
+            val state = queue[head++]
+            val fail = fails[state]
+            links[state] = if (ends[fail].isEmpty()) links[fail] else fail
+            for (digit in 0 until RADIX) {
+                val at = RADIX * state + digit
+                val failNext = next[RADIX * fail + digit]
+                if (-1 == next[at]) next[at] = failNext
+                else {
+                    fails[next[at]] = failNext
+                    queue[tail++] = next[at]
+                }
+            }
+        }
+
+        this.next = next
+        this.ends = ends
+        this.links = links
+    }
+
+    fun next(state: Int, digit: Int) = next[RADIX * state + digit]
+
+    inline fun forEachEnding(state: Int, block: (Int) -> Unit) {
+        var at = if (ends[state].isEmpty()) links[state] else state
+        while (-1 != at) {
+            ends[at].forEach(block)
+            at = links[at]
+        }
+    }
 
+    companion object {
+        private val NONE = IntArray(0)
+    }
+}
+
+/**
+ * Reads the digits of PI in order, starting with the leading "3".  Blocks
+ * of digits come from [PiDigits], computed as needed.
+ */
 class Pi : Iterator<Int> {
     companion object {
         fun generatePiDigits(): Sequence<Int> {
@@ -84,45 +192,13 @@ class Pi : Iterator<Int> {
         }
     }
 
-    private var q: BigInteger = ONE
-    private var r: BigInteger = ZERO
-    private var t: BigInteger = ONE
-    private var k: BigInteger = ONE
-    private var n: BigInteger = THREE
-    private var l: BigInteger = THREE
+    private var digits = PiDigits.atLeast(0)
+    private var i = 0
 
     override fun hasNext() = true
 
-    override fun next() = nextDigitOfPi()
-
-    /**
-     * See <a href="https://rosettacode.org/wiki/Pi"><cite>Pi - Rosetta Code</cite></a>
-     */
-    private fun nextDigitOfPi(): Int {
-        var nn: BigInteger
-        var nr: BigInteger
-
-        while (true) {
-            val foo = FOUR * q + r - t
-            val bar = n * t
-
-            if (foo < bar) {
-                val nextDigit = n
-                nr = TEN * (r - bar)
-                n = (TEN * (THREE * q + r)) / t - TEN * n
-                q *= TEN
-                r = nr
-                return nextDigit.toInt()
-            } else {
-                nr = (TWO * q + r) * l
-                nn = (q * (SEVEN * k) + TWO + r * l) / (t * l)
-                q *= k
-                t *= l
-                l += TWO
-                k += ONE
-                n = nn
-                r = nr
-            }
-        }
+    override fun next(): Int {
+        if (digits.size == i) digits = PiDigits.atLeast(i + 1)
+        return digits[i++]
     }
 }
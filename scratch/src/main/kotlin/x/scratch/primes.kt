@@ -0,0 +1,242 @@
+package x.scratch
+
+import java.util.stream.IntStream
+import kotlin.math.sqrt
+import kotlin.system.measureTimeMillis
+
+fun main() {
+    println("== PRIMES")
+    for (limit in listOf(1_000_000L, 100_000_000L, 1_000_000_000L)) {
+        var count: Long
+        val millis = measureTimeMillis { count = PrimeSieve(limit).count }
+        println("PRIMES UP TO $limit -> $count in ${millis}ms")
+    }
+
+    println()
+    println("== MILLER-RABIN")
+    listOf(
+        2_147_483_647L, // 2^31-1
+        3_215_031_751L, // Strong pseudoprime to bases 2, 3, 5, and 7
+        2_305_843_009_213_693_951L, // 2^61-1
+        Long.MAX_VALUE,
+    ).forEach {
+        println("$it -> ${it.isPrime()}")
+    }
+
+    println()
+    println("== FACTORING")
+    val factors = SmallestPrimeFactors(1_000_000)
+    listOf(360, 1_001, 65_536, 999_983, 999_999).forEach {
+        println("$it -> ${factors.factorize(it)}")
+    }
+}
+
+/**
+ * A [segmented sieve of Eratosthenes](https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes#Segmented_sieve)
+ * of the primes up to and including [limit].
+ *
+ * Keeps one bit per odd number, set for composites.  Sieves segments sized
+ * to fit in L1 cache, in parallel, as each segment owns its own words.
+ */
+class PrimeSieve(val limit: Long) {
+    /** Bit `i` is the odd number `2i + 1`. */
+    private val size = (limit + 1) / 2
+    private val composites: LongArray
+
+    init {
+        require(0L <= limit && MAX_ODD_BITS >= size) {
+            "Limit out of range: $limit"
+        }
+
+        composites = LongArray(((size + 63) / 64).toInt())
+        val basePrimes = basePrimes(sqrt(limit.toDouble()).toInt() + 1)
+        val segments = ((size + SEGMENT_BITS - 1) / SEGMENT_BITS).toInt()
+        IntStream.range(0, segments).parallel().forEach {
+            sieve(it.toLong() * SEGMENT_BITS, basePrimes)
+        }
+        if (0L < size) composites[0] = composites[0] or 1L // Not 1
+    }
+
+    /** The count of primes up to [limit]. */
+    val count: Long by lazy {
+        var count = if (2L <= limit) 1L else 0L
+        forEachOdd { ++count }
+        count
+    }
+
+    fun isPrime(n: Long): Boolean {
+        require(n <= limit) { "Beyond sieve limit of $limit: $n" }
+        return when {
+            2L > n -> false
+            2L == n -> true
+            0L == n % 2 -> false
+            else -> !composite(n / 2)
+        }
+    }
+
+    /** Calls [block] with each prime in order. */
+    fun forEach(block: (Long) -> Unit) {
+        if (2L <= limit) block(2L)
+        forEachOdd(block)
+    }
+
+    private inline fun forEachOdd(block: (Long) -> Unit) {
+        composites.forEachIndexed { w, word ->
+            var primes = word.inv()
+            while (0L != primes) {
+                val i = 64L * w + primes.countTrailingZeroBits()
+                if (size <= i) return
+                block(2 * i + 1)
+                primes = primes and (primes - 1)
+            }
+        }
+    }
+
+    private fun composite(i: Long) =
+        0L != composites[(i / 64).toInt()] and (1L shl (i % 64).toInt())
+
+    /** Writes only to the words of `[from, from + SEGMENT_BITS)`. */
+    private fun sieve(from: Long, basePrimes: IntArray) {
+        val to = minOf(from + SEGMENT_BITS, size)
+        for (p in basePrimes) {
+            if (2 == p) continue
+            val first = maxOf(p.toLong() * p, (2 * from + 1 + p - 1) / p * p)
+            var i = (if (0L == first % 2) first + p else first) / 2
+            while (i < to) {
+                val w = (i / 64).toInt()
+                composites[w] = composites[w] or (1L shl (i % 64).toInt())
+                i += p
+            }
+        }
+    }
+}
+
+/** Each segment is 32KiB of bits. */
+private const val SEGMENT_BITS = 1L shl 18
+private const val MAX_ODD_BITS = 64L * Int.MAX_VALUE
+
+/** The primes up to [limit] by the plain sieve, to seed segments. */
+private fun basePrimes(limit: Int): IntArray {
+    val composite = BooleanArray(limit + 1)
+    var p = 2
+    while (p * p <= limit) {
+        if (!composite[p])
+            for (m in p * p..limit step p) composite[m] = true
+        ++p
+    }
+    return (2..limit).filter { !composite[it] }.toIntArray()
+}
+
+/**
+ * Deterministic [Miller-Rabin](https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test)
+ * for all 64-bit numbers: the first twelve primes suffice as witnesses.
+ */
+fun Long.isPrime(): Boolean {
+    if (2L > this) return false
+    for (p in WITNESSES) {
+        if (p == this) return true
+        if (0L == this % p) return false
+    }
+    if (this < WITNESSES.last() * WITNESSES.last()) return true
+
+    val s = (this - 1).countTrailingZeroBits()
+    val d = (this - 1) shr s
+    return WITNESSES.none { composite(it, d, s) }
+}
+
+private val WITNESSES =
+    longArrayOf(2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37)
+
+private fun Long.composite(witness: Long, d: Long, s: Int): Boolean {
+    var x = powMod(witness, d, this)
+    if (1L == x || this - 1 == x) return false
+    repeat(s - 1) {
+        x = mulMod(x, x, this)
+        if (this - 1 == x) return false
+    }
+    return true
+}
+
+private fun powMod(base: Long, exponent: Long, m: Long): Long {
+    var result = 1L
+    var b = base % m
+    var e = exponent
+    while (0L != e) {
+        if (1L == e and 1L) result = mulMod(result, b, m)
+        b = mulMod(b, b, m)
+        e = e shr 1
+    }
+    return result
+}
+
+/** Past this, products of residues may overflow a `Long`. */
+private const val MAX_SAFE_MODULUS = 3_037_000_499L
+
+/** Multiplies by doubling for large [m], as the product may overflow. */
+private fun mulMod(a: Long, b: Long, m: Long): Long {
+    if (MAX_SAFE_MODULUS >= m) return a * b % m
+
+    var result = 0L
+    var x = a
+    var y = b
+    while (0L != y) {
+        if (1L == y and 1L) result = addMod(result, x, m)
+        x = addMod(x, x, m)
+        y = y shr 1
+    }
+    return result
+}
+
+private fun addMod(a: Long, b: Long, m: Long) =
+    if (a >= m - b) a - (m - b) else a + b
+
+/**
+ * The smallest prime factor of each number up to [limit] by a linear
+ * sieve, so factoring takes one step per factor rather than trial division.
+ */
+class SmallestPrimeFactors(val limit: Int) {
+    private val factors: IntArray
+
+    init {
+        require(limit in 1 until Int.MAX_VALUE) {
+            "Limit out of range: $limit"
+        }
+
+        factors = IntArray(limit + 1)
+        val primes = mutableListOf<Int>()
+        for (n in 2..limit) {
+            if (0 == factors[n]) {
+                factors[n] = n
+                primes += n
+            }
+            for (p in primes) {
+                val m = n.toLong() * p
+                if (p > factors[n] || limit < m) break
+                factors[m.toInt()] = p
+            }
+        }
+    }
+
+    /** The smallest prime factor of [n], itself if prime. */
+    operator fun get(n: Int): Int {
+        require(n in 2..limit) { "Out of range 2..$limit: $n" }
+        return factors[n]
+    }
+
+    /** The prime factors of [n] in ascending order, with repeats. */
+    fun factorize(n: Int): List<Int> {
+        val factors = mutableListOf<Int>()
+        var m = n
+        while (1 < m) {
+            val p = this[m]
+            factors += p
+            m /= p
+        }
+        return factors
+    }
+
+    /** The distinct prime factors of [n] in ascending order. */
+    fun distinctFactors(n: Int): Set<Int> = factorize(n).toCollection(
+        LinkedHashSet()
+    )
+}
@@ -0,0 +1,413 @@
+package x.scratch
+
+import java.util.Objects.hash
+import kotlin.system.measureNanoTime
+
+fun main() {
+    println("== PRIMITIVE MATRICES")
+
+    val rv0 = LongRowVector2(1, 2)
+    val cv0 = LongColVector2(3, 4)
+    println("ROW * COL - ${rv0 * cv0}")
+    val mat0 = cv0 * rv0
+    println("COL * ROW - $mat0")
+    println("DET - ${mat0.det}")
+    println("FIB(90) - ${LongMatrix2(0, 1, 1, 1).pow(90).b}")
+
+    val n = 1_000_000
+    val rotations = DoubleMatrix2Array(n)
+    for (i in 0 until n) {
+        val theta = 1e-6 * i
+        rotations[i] = DoubleMatrix2(
+            Math.cos(theta), -Math.sin(theta),
+            Math.sin(theta), Math.cos(theta)
+        )
+    }
+    val squares = DoubleMatrix2Array(n)
+    var product: DoubleMatrix2
+    val batch = measureNanoTime { multiply(rotations, rotations, squares) }
+    val chain = measureNanoTime { product = rotations.product() }
+    println("BATCH $n SQUARES - ${batch / 1_000_000}ms")
+    println("CHAIN $n PRODUCT - ${chain / 1_000_000}ms; DET ${product.det}")
+}
+
+/**
+ * A 2x2 matrix of `Long`, as [Matrix2] of [MathInt] but unboxed.  Products
+ * are computed directly from the entries, not from row and column vectors.
+ */
+class LongMatrix2(val a: Long, val b: Long, val c: Long, val d: Long) {
+    operator fun component1() = a
+    operator fun component2() = b
+    operator fun component3() = c
+    operator fun component4() = d
+
+    override fun equals(other: Any?) = this === other ||
+            other is LongMatrix2 &&
+            a == other.a &&
+            b == other.b &&
+            c == other.c &&
+            d == other.d
+
+    override fun hashCode() = hash(javaClass, a, b, c, d)
+    override fun toString() = "[$a, $b; $c, $d]"
+
+    companion object {
+        val ZERO = LongMatrix2(0, 0, 0, 0)
+        val ONE = LongMatrix2(1, 0, 0, 1)
+    }
+}
+
+class LongRowVector2(val a0: Long, val a1: Long) {
+    override fun equals(other: Any?) = this === other ||
+            other is LongRowVector2 &&
+            a0 == other.a0 &&
+            a1 == other.a1
+
+    override fun hashCode() = hash(javaClass, a0, a1)
+    override fun toString() = "[$a0, $a1]"
+}
+
+class LongColVector2(val a0: Long, val a1: Long) {
+    override fun equals(other: Any?) = this === other ||
+            other is LongColVector2 &&
+            a0 == other.a0 &&
+            a1 == other.a1
+
+    override fun hashCode() = hash(javaClass, a0, a1)
+    override fun toString() = "[$a0; $a1]"
+}
+
+fun LongRowVector2.transpose() = LongColVector2(a0, a1)
+fun LongColVector2.transpose() = LongRowVector2(a0, a1)
+
+operator fun LongRowVector2.unaryPlus() = this
+operator fun LongRowVector2.unaryMinus() = LongRowVector2(-a0, -a1)
+
+operator fun LongRowVector2.plus(other: LongRowVector2) =
+    LongRowVector2(a0 + other.a0, a1 + other.a1)
+
+operator fun LongColVector2.plus(other: LongColVector2) =
+    LongColVector2(a0 + other.a0, a1 + other.a1)
+
+operator fun LongRowVector2.minus(other: LongRowVector2) =
+    LongRowVector2(a0 - other.a0, a1 - other.a1)
+
+operator fun LongColVector2.minus(other: LongColVector2) =
+    LongColVector2(a0 - other.a0, a1 - other.a1)
+
+operator fun LongRowVector2.times(other: LongColVector2) =
+    a0 * other.a0 + a1 * other.a1
+
+operator fun LongRowVector2.times(other: LongRowVector2) =
+    a0 * other.a1 - a1 * other.a0
+
+operator fun LongColVector2.times(other: LongColVector2) =
+    a0 * other.a1 - a1 * other.a0
+
+operator fun LongColVector2.times(other: LongRowVector2) = LongMatrix2(
+    a0 * other.a0,
+    a0 * other.a1,
+    a1 * other.a0,
+    a1 * other.a1
+)
+
+operator fun LongMatrix2.unaryPlus() = this
+operator fun LongMatrix2.unaryMinus() = LongMatrix2(-a, -b, -c, -d)
+
+operator fun LongMatrix2.plus(other: LongMatrix2) =
+    LongMatrix2(a + other.a, b + other.b, c + other.c, d + other.d)
+
+operator fun LongMatrix2.minus(other: LongMatrix2) =
+    LongMatrix2(a - other.a, b - other.b, c - other.c, d - other.d)
+
+operator fun LongMatrix2.times(other: LongMatrix2) = LongMatrix2(
+    a * other.a + b * other.c,
+    a * other.b + b * other.d,
+    c * other.a + d * other.c,
+    c * other.b + d * other.d
+)
+
+operator fun LongMatrix2.times(other: LongColVector2) = LongColVector2(
+    a * other.a0 + b * other.a1,
+    c * other.a0 + d * other.a1
+)
+
+val LongMatrix2.det get() = a * d - b * c
+
+/** Raises to [n] by squaring, keeping the entries in locals throughout. */
+fun LongMatrix2.pow(n: Int): LongMatrix2 {
+    require(0 <= n) { "Negative power: $n" }
+    var (ra, rb, rc, rd) = LongMatrix2.ONE
+    var (sa, sb, sc, sd) = this
+    var e = n
+    while (0 != e) {
+        if (1 == e and 1) {
+            val ta = ra * sa + rb * sc
+            val tb = ra * sb + rb * sd
+            val tc = rc * sa + rd * sc
+            rd = rc * sb + rd * sd
+            ra = ta
+            rb = tb
+            rc = tc
+        }
+        val ta = sa * sa + sb * sc
+        val tb = sa * sb + sb * sd
+        val tc = sc * sa + sd * sc
+        sd = sc * sb + sd * sd
+        sa = ta
+        sb = tb
+        sc = tc
+        e = e shr 1
+    }
+    return LongMatrix2(ra, rb, rc, rd)
+}
+
+fun Matrix2<MathInt>.toLongMatrix2() = LongMatrix2(
+    a.value.toLong(),
+    b.value.toLong(),
+    c.value.toLong(),
+    d.value.toLong()
+)
+
+/** A 2x2 matrix of `Double`; see [LongMatrix2]. */
+class DoubleMatrix2(
+    val a: Double,
+    val b: Double,
+    val c: Double,
+    val d: Double
+) {
+    operator fun component1() = a
+    operator fun component2() = b
+    operator fun component3() = c
+    operator fun component4() = d
+
+    override fun equals(other: Any?) = this === other ||
+            other is DoubleMatrix2 &&
+            a == other.a &&
+            b == other.b &&
+            c == other.c &&
+            d == other.d
+
+    override fun hashCode() = hash(javaClass, a, b, c, d)
+    override fun toString() = "[$a, $b; $c, $d]"
+
+    companion object {
+        val ZERO = DoubleMatrix2(0.0, 0.0, 0.0, 0.0)
+        val ONE = DoubleMatrix2(1.0, 0.0, 0.0, 1.0)
+    }
+}
+
+class DoubleRowVector2(val a0: Double, val a1: Double) {
+    override fun equals(other: Any?) = this === other ||
+            other is DoubleRowVector2 &&
+            a0 == other.a0 &&
+            a1 == other.a1
+
+    override fun hashCode() = hash(javaClass, a0, a1)
+    override fun toString() = "[$a0, $a1]"
+}
+
+class DoubleColVector2(val a0: Double, val a1: Double) {
+    override fun equals(other: Any?) = this === other ||
+            other is DoubleColVector2 &&
+            a0 == other.a0 &&
+            a1 == other.a1
+
+    override fun hashCode() = hash(javaClass, a0, a1)
+    override fun toString() = "[$a0; $a1]"
+}
+
+fun DoubleRowVector2.transpose() = DoubleColVector2(a0, a1)
+fun DoubleColVector2.transpose() = DoubleRowVector2(a0, a1)
+
+operator fun DoubleRowVector2.unaryPlus() = this
+operator fun DoubleRowVector2.unaryMinus() = DoubleRowVector2(-a0, -a1)
+
+operator fun DoubleRowVector2.plus(other: DoubleRowVector2) =
+    DoubleRowVector2(a0 + other.a0, a1 + other.a1)
+
+operator fun DoubleColVector2.plus(other: DoubleColVector2) =
+    DoubleColVector2(a0 + other.a0, a1 + other.a1)
+
+operator fun DoubleRowVector2.minus(other: DoubleRowVector2) =
+    DoubleRowVector2(a0 - other.a0, a1 - other.a1)
+
+operator fun DoubleColVector2.minus(other: DoubleColVector2) =
+    DoubleColVector2(a0 - other.a0, a1 - other.a1)
+
+operator fun DoubleRowVector2.times(other: DoubleColVector2) =
+    a0 * other.a0 + a1 * other.a1
+
+operator fun DoubleRowVector2.times(other: DoubleRowVector2) =
+    a0 * other.a1 - a1 * other.a0
+
+operator fun DoubleColVector2.times(other: DoubleColVector2) =
+    a0 * other.a1 - a1 * other.a0
+
+operator fun DoubleColVector2.times(other: DoubleRowVector2) = DoubleMatrix2(
+    a0 * other.a0,
+    a0 * other.a1,
+    a1 * other.a0,
+    a1 * other.a1
+)
+
+operator fun DoubleMatrix2.unaryPlus() = this
+operator fun DoubleMatrix2.unaryMinus() = DoubleMatrix2(-a, -b, -c, -d)
+
+operator fun DoubleMatrix2.plus(other: DoubleMatrix2) =
+    DoubleMatrix2(a + other.a, b + other.b, c + other.c, d + other.d)
+
+operator fun DoubleMatrix2.minus(other: DoubleMatrix2) =
+    DoubleMatrix2(a - other.a, b - other.b, c - other.c, d - other.d)
+
+operator fun DoubleMatrix2.times(other: DoubleMatrix2) = DoubleMatrix2(
+    a * other.a + b * other.c,
+    a * other.b + b * other.d,
+    c * other.a + d * other.c,
+    c * other.b + d * other.d
+)
+
+operator fun DoubleMatrix2.times(other: DoubleColVector2) = DoubleColVector2(
+    a * other.a0 + b * other.a1,
+    c * other.a0 + d * other.a1
+)
+
+val DoubleMatrix2.det get() = a * d - b * c
+
+/**
+ * 2x2 `Long` matrices in structure-of-arrays layout: the `i`th matrix is
+ * `[a[i], b[i]; c[i], d[i]]`.  Loops over each entry array in step, which
+ * suits vectorizing better than an array of matrix objects.
+ */
+class LongMatrix2Array(val size: Int) {
+    val a = LongArray(size)
+    val b = LongArray(size)
+    val c = LongArray(size)
+    val d = LongArray(size)
+
+    operator fun get(i: Int) = LongMatrix2(a[i], b[i], c[i], d[i])
+
+    operator fun set(i: Int, matrix: LongMatrix2) {
+        a[i] = matrix.a
+        b[i] = matrix.b
+        c[i] = matrix.c
+        d[i] = matrix.d
+    }
+
+    /** The product of all the matrices in order, allocating only the result. */
+    fun product(): LongMatrix2 {
+        var ra = 1L
+        var rb = 0L
+        var rc = 0L
+        var rd = 1L
+        for (i in 0 until size) {
+            val ta = ra * a[i] + rb * c[i]
+            val tb = ra * b[i] + rb * d[i]
+            val tc = rc * a[i] + rd * c[i]
+            rd = rc * b[i] + rd * d[i]
+            ra = ta
+            rb = tb
+            rc = tc
+        }
+        return LongMatrix2(ra, rb, rc, rd)
+    }
+}
+
+/**
+ * Multiplies matrices pairwise, `out[i] = left[i] * right[i]`.  [out] may
+ * be [left] or [right].
+ */
+fun multiply(
+    left: LongMatrix2Array,
+    right: LongMatrix2Array,
+    out: LongMatrix2Array = LongMatrix2Array(left.size)
+): LongMatrix2Array {
+    require(left.size == right.size && left.size == out.size) {
+        "Mismatched sizes: ${left.size}, ${right.size}, ${out.size}"
+    }
+    val (la, lb, lc, ld) = left
+    val (ra, rb, rc, rd) = right
+    for (i in 0 until left.size) {
+        val a = la[i] * ra[i] + lb[i] * rc[i]
+        val b = la[i] * rb[i] + lb[i] * rd[i]
+        val c = lc[i] * ra[i] + ld[i] * rc[i]
+        val d = lc[i] * rb[i] + ld[i] * rd[i]
+        out.a[i] = a
+        out.b[i] = b
+        out.c[i] = c
+        out.d[i] = d
+    }
+    return out
+}
+
+private operator fun LongMatrix2Array.component1() = a
+private operator fun LongMatrix2Array.component2() = b
+private operator fun LongMatrix2Array.component3() = c
+private operator fun LongMatrix2Array.component4() = d
+
+/**
+ * 2x2 `Double` matrices in structure-of-arrays layout; see
+ * [LongMatrix2Array].
+ */
+class DoubleMatrix2Array(val size: Int) {
+    val a = DoubleArray(size)
+    val b = DoubleArray(size)
+    val c = DoubleArray(size)
+    val d = DoubleArray(size)
+
+    operator fun get(i: Int) = DoubleMatrix2(a[i], b[i], c[i], d[i])
+
+    operator fun set(i: Int, matrix: DoubleMatrix2) {
+        a[i] = matrix.a
+        b[i] = matrix.b
+        c[i] = matrix.c
+        d[i] = matrix.d
+    }
+
+    /** The product of all the matrices in order, allocating only the result. */
+    fun product(): DoubleMatrix2 {
+        var ra = 1.0
+        var rb = 0.0
+        var rc = 0.0
+        var rd = 1.0
+        for (i in 0 until size) {
+            val ta = ra * a[i] + rb * c[i]
+            val tb = ra * b[i] + rb * d[i]
+            val tc = rc * a[i] + rd * c[i]
+            rd = rc * b[i] + rd * d[i]
+            ra = ta
+            rb = tb
+            rc = tc
+        }
+        return DoubleMatrix2(ra, rb, rc, rd)
+    }
+}
+
+/** See `multiply` for [LongMatrix2Array]. */
+fun multiply(
+    left: DoubleMatrix2Array,
+    right: DoubleMatrix2Array,
+    out: DoubleMatrix2Array = DoubleMatrix2Array(left.size)
+): DoubleMatrix2Array {
+    require(left.size == right.size && left.size == out.size) {
+        "Mismatched sizes: ${left.size}, ${right.size}, ${out.size}"
+    }
+    val (la, lb, lc, ld) = left
+    val (ra, rb, rc, rd) = right
+    for (i in 0 until left.size) {
+        val a = la[i] * ra[i] + lb[i] * rc[i]
+        val b = la[i] * rb[i] + lb[i] * rd[i]
+        val c = lc[i] * ra[i] + ld[i] * rc[i]
+        val d = lc[i] * rb[i] + ld[i] * rd[i]
+        out.a[i] = a
+        out.b[i] = b
+        out.c[i] = c
+        out.d[i] = d
+    }
+    return out
+}
+
+private operator fun DoubleMatrix2Array.component1() = a
+private operator fun DoubleMatrix2Array.component2() = b
+private operator fun DoubleMatrix2Array.component3() = c
+private operator fun DoubleMatrix2Array.component4() = d
@@ -129,7 +129,7 @@ operator fun <T : Ring<T>> ColVector2<T>.times(other: ColVector2<T>) =
 
 operator fun <T : Ring<T>> ColVector2<T>.times(other: RowVector2<T>) =
     Matrix2(
-        a0 + other.a0,
+        a0 * other.a0,
         a0 * other.a1,
         a1 * other.a0,
         a1 * other.a1
@@ -141,13 +141,14 @@ val <T : Ring<T>> Matrix2<T>.rows: Pair<RowVector2<T>, RowVector2<T>>
 val <T : Ring<T>> Matrix2<T>.cols: Pair<ColVector2<T>, ColVector2<T>>
     get() = ColVector2(a, c) to ColVector2(b, d)
 
+/** Directly from the entries, not via [rows] and [cols]. */
 operator fun <T : Ring<T>> Matrix2<T>.times(other: Matrix2<T>) =
     Matrix2(
-        rows.first * other.cols.first,
-        rows.first * other.cols.second,
-        rows.second * other.cols.first,
-        rows.second * other.cols.second
+        a * other.a + b * other.c,
+        a * other.b + b * other.d,
+        c * other.a + d * other.c,
+        c * other.b + d * other.d
     )
 
 val <T : Ring<T>> Matrix2<T>.det: T
-    get() = rows.first * rows.second
+    get() = a * d - b * c
@@ -0,0 +1,54 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+import java.math.BigInteger
+
+internal class CollatzTest {
+    @Test
+    fun `should count steps to 1`() {
+        val steps = CollatzSteps()
+
+        expect(steps[1L]).toBe(0)
+        expect(steps[27L]).toBe(111)
+        expect(steps[63_728_127L]).toBe(949)
+    }
+
+    @Test
+    fun `should walk past a small cache`() {
+        val steps = CollatzSteps(cacheSize = 16)
+
+        for (n in 1L..10_000L) expect(steps[n]).toBe(naiveSteps(n))
+    }
+
+    @Test
+    fun `should walk past 64 bits`() {
+        val n = Long.MAX_VALUE
+
+        expect(CollatzSteps(cacheSize = 16)[n]).toBe(naiveSteps(n))
+    }
+
+    @Test
+    fun `should count histograms in parallel`() {
+        val steps = CollatzSteps(cacheSize = 1 shl 10)
+        val range = 1L..1_000_000L
+
+        val histogram = steps.histogram(range)
+
+        val expected = LongArray(histogram.size)
+        range.forEach { ++expected[steps[it]] }
+        expect(histogram.toList()).toBe(expected.toList())
+    }
+}
+
+private fun naiveSteps(n: Long): Int {
+    var m = n.toBigInteger()
+    var steps = 0
+    while (BigInteger.ONE != m) {
+        m = if (m.testBit(0)) m * 3.toBigInteger() + BigInteger.ONE
+        else m.shiftRight(1)
+        ++steps
+    }
+    return steps
+}
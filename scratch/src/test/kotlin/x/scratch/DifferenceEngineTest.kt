@@ -0,0 +1,143 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.fluent.en_GB.toThrow
+import ch.tutteli.atrium.api.verbs.expect
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Test
+
+internal class DifferenceEngineTest {
+    private val engine = DifferenceEngine<Int, Int, String>(
+        { it / 10 },
+        { it.substringBefore(':').toInt() },
+    ) { ours, theirs -> "${ours / 10}:${ours % 10}" == theirs }
+
+    @Test
+    fun `should agree with the in-memory diff`() {
+        val ours = (0 until 1_000 step 2).map { 10 * it + it % 7 }
+        val theirs = (0 until 1_000 step 3).map { "$it:${it % 5}" }
+        val diff = engine.diff(ours, theirs)
+
+        val deltas = mutableListOf<Delta<Int, String>>()
+        val counts = engine.diffSorted(
+            ours.iterator(),
+            theirs.iterator(),
+            naturalOrder(),
+            batchSize = 7,
+        ) {
+            expect(it.size <= 7).toBe(true)
+            deltas += it
+        }
+
+        expect(deltas.filterIsInstance<Delta.Added<Int>>().map { it.ours })
+            .toBe(diff.addedByUs)
+        expect(
+            deltas.filterIsInstance<Delta.Removed<String>>().map { it.theirs }
+        ).toBe(diff.removedByUs)
+        expect(
+            deltas.filterIsInstance<Delta.Changed<Int, String>>()
+                .map { it.ours to it.theirs }
+        ).toBe(diff.changedByUs)
+        expect(counts).toBe(
+            DiffCounts(
+                diff.addedByUs.size.toLong(),
+                diff.removedByUs.size.toLong(),
+                diff.changedByUs.size.toLong()
+            )
+        )
+    }
+
+    @Test
+    fun `should stream as a flow`() {
+        val deltas = runBlocking {
+            engine.diffSortedFlow(
+                sequenceOf(10, 21, 30),
+                sequenceOf("2:1", "3:1", "4:0"),
+                naturalOrder(),
+            ).toList()
+        }
+
+        expect(deltas).toBe(
+            listOf(
+                Delta.Added(10),
+                Delta.Changed(30, "3:1"),
+                Delta.Removed("4:0"),
+            )
+        )
+    }
+
+    @Test
+    fun `should agree in parallel`() {
+        val ours = (0 until 10_000 step 2).map { 10 * it + it % 7 }
+        val theirs = (0 until 10_000 step 3).map { "$it:${it % 5}" }
+        val diff = engine.diff(ours, theirs)
+        val parallel = engine.diffParallel(ours, theirs)
+
+        expect(parallel.addedByUs.toSet()).toBe(diff.addedByUs.toSet())
+        expect(parallel.removedByUs.toSet()).toBe(diff.removedByUs.toSet())
+        expect(parallel.changedByUs.toSet()).toBe(diff.changedByUs.toSet())
+        expect(engine.countParallel(ours, theirs)).toBe(
+            DiffCounts(
+                diff.addedByUs.size.toLong(),
+                diff.removedByUs.size.toLong(),
+                diff.changedByUs.size.toLong()
+            )
+        )
+    }
+
+    @Test
+    fun `should sample the same keys on both sides`() {
+        val ours = (0 until 100_000).map { 10 * it }
+        val theirs = (0 until 100_000).map { "$it:0" }
+
+        val counts = engine.countParallel(ours, theirs, 0.1)
+
+        // Sampling by key never splits a key across sides
+        expect(counts.added).toBe(0L)
+        expect(counts.removed).toBe(0L)
+        expect(counts.changed).toBe(0L)
+
+        val sampled = engine.diffParallel(ours, theirs.map { "$it!" }, 0.1)
+        expect(sampled.changedByUs.size in 9_000..11_000).toBe(true)
+    }
+
+    @Test
+    fun `should keep the last of repeated keys`() {
+        val ours = listOf(10, 11, 20, 21)
+        val theirs = listOf("1:0", "1:1", "3:0")
+
+        val diff = engine.diff(ours, theirs)
+
+        expect(diff.addedByUs).toBe(listOf(21))
+        expect(diff.removedByUs).toBe(listOf("3:0"))
+        expect(diff.changedByUs).toBe(emptyList())
+        expect(engine.countParallel(ours, theirs))
+            .toBe(DiffCounts(1L, 1L, 0L))
+    }
+
+    @Test
+    fun `should match null items by key`() {
+        val nullable = DifferenceEngine<Int, Int, String?>(
+            { it / 10 },
+            { it?.substringBefore(':')?.toInt() ?: 0 },
+        ) { ours, theirs -> "${ours / 10}:${ours % 10}" == theirs }
+
+        val diff = nullable.diff(listOf(0, 10), listOf(null, "1:0"))
+
+        expect(diff.addedByUs).toBe(emptyList())
+        expect(diff.removedByUs).toBe(emptyList())
+        expect(diff.changedByUs).toBe(listOf(0 to null))
+    }
+
+    @Test
+    fun `should reject unsorted input`() {
+        expect {
+            engine.diffSorted(
+                listOf(20, 10).iterator(),
+                emptyList<String>().iterator(),
+                naturalOrder(),
+            ) {}
+        }.toThrow<IllegalStateException>()
+    }
+}
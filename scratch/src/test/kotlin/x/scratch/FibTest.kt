@@ -0,0 +1,40 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+import java.math.BigInteger.ONE
+import java.math.BigInteger.ZERO
+
+internal class FibTest {
+    @Test
+    fun `should match the sequence by addition`() {
+        var fib = ZERO
+        var next = ONE
+        for (n in 0..300) {
+            expect(Fib(n).fib).toBe(fib)
+            expect(Fib(n).d).toBe(next)
+            next = (fib + next).also { fib = next }
+        }
+    }
+
+    @Test
+    fun `should invert negative fibs`() {
+        for (n in 1..40)
+            expect(Fib(n) * Fib(-n)).toBe(Fib(0))
+        expect(Fib(-7).fib.toInt()).toBe(13)
+        expect(Fib(-8).fib.toInt()).toBe(-21)
+    }
+
+    @Test
+    fun `should agree in parallel`() {
+        val n = 1_234_567
+        val fib = Fib(n)
+        val parallel = parallelFib(n)
+
+        expect(parallel.fib).toBe(fib.fib)
+        expect(parallel.a).toBe(fib.a)
+        expect(parallel.d).toBe(fib.d)
+        expect(fib.fib).toBe(Fib(n - 1).d)
+    }
+}
@@ -0,0 +1,125 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+import x.scratch.Boundary.Fixed
+import x.scratch.Boundary.Insulated
+import x.scratch.Boundary.Periodic
+import java.nio.file.Files.createTempFile
+import java.nio.file.Files.delete
+import kotlin.random.Random
+
+internal class HeatGridTest {
+    @Test
+    fun `should average with neighbors, insulated edges with one`() {
+        // Every sum divides evenly, so no rounding at random
+        val init = intArrayOf(2, 2, 8, 2)
+        val grid = HeatGrid(intArrayOf(4), Insulated, Random(1L)) { init[it] }
+
+        grid.step()
+
+        expect(grid.cells.toList()).toBe(listOf(2, 4, 4, 5))
+        expect(grid.equilibrium).toBe(false)
+    }
+
+    @Test
+    fun `should stay within the initial range`() {
+        val random = Random(1L)
+        val grid = HeatGrid(intArrayOf(150_000), Insulated, random) {
+            random.nextInt(3, 8)
+        }
+
+        repeat(20) {
+            grid.step()
+            expect(grid.cells.all { it in 3..7 }).toBe(true)
+        }
+    }
+
+    @Test
+    fun `should reach equilibrium from hot and cold halves`() {
+        val grid = HeatGrid(intArrayOf(20), Insulated, Random(1L)) {
+            if (it < 10) 9 else 0
+        }
+
+        var steps = 0
+        while (!grid.equilibrium && steps < 10_000) {
+            grid.step()
+            ++steps
+        }
+
+        expect(grid.equilibrium).toBe(true)
+        expect(grid.cells.all { it == grid.cells[0] }).toBe(true)
+    }
+
+    @Test
+    fun `should hold steady at equilibrium across tiles`() {
+        listOf(
+            intArrayOf(100_000) to Insulated,
+            intArrayOf(300, 200) to Fixed(7),
+            intArrayOf(40, 40, 40) to Periodic,
+        ).forEach { (dimensions, boundary) ->
+            val grid = HeatGrid(dimensions, boundary, Random(1L)) { 7 }
+
+            repeat(3) { grid.step() }
+
+            expect(grid.equilibrium).toBe(true)
+            expect(grid.cells.all { 7 == it }).toBe(true)
+        }
+    }
+
+    @Test
+    fun `should reach equilibrium in 2-D`() {
+        val grid = HeatGrid(intArrayOf(5, 4), Insulated, Random(1L)) {
+            if (it < 10) 9 else 0
+        }
+
+        var steps = 0
+        while (!grid.equilibrium && steps < 10_000) {
+            grid.step()
+            ++steps
+        }
+
+        expect(grid.equilibrium).toBe(true)
+    }
+
+    @Test
+    fun `should cool toward a fixed boundary`() {
+        val grid = HeatGrid(intArrayOf(8, 8, 8), Fixed(0), Random(1L)) { 9 }
+
+        repeat(1_000) { grid.step() }
+
+        expect(grid[4, 4, 4]).toBe(0)
+    }
+
+    @Test
+    fun `should stream every kth frame`() {
+        val path = createTempFile("heat", ".snapshots")
+        try {
+            val grid = HeatGrid(intArrayOf(70_000), Periodic, Random(1L)) {
+                it % 10
+            }
+            val expected = mutableListOf<List<Int>>()
+            SnapshotWriter(path, grid, 3).use { writer ->
+                for (step in 0..7) {
+                    if (0 != step) grid.step()
+                    if (0 == step % 3) expected += grid.cells.toList()
+                    writer.frame(step)
+                }
+            }
+
+            val steps = mutableListOf<Int>()
+            val frames = mutableListOf<List<Int>>()
+            forEachSnapshot(path) {
+                expect(it.dimensions.toList()).toBe(listOf(70_000))
+                steps += it.step
+                frames += it.cells.toList()
+            }
+
+            expect(steps.toList()).toBe(listOf(0, 3, 6))
+            expect(frames.toList()).toBe(expected.toList())
+        } finally {
+            delete(path)
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.util.concurrent.Executors.newFixedThreadPool
+
+internal class MemoizeTest {
+    @Test
+    fun `should key on every argument`() {
+        val f = { a: Int, b: Int -> a - b }.memoize()
+
+        expect(f(3, 1)).toBe(2)
+        expect(f(3, 2)).toBe(1)
+        expect(f.stats).toBe(MemoStats(hits = 0, misses = 2, evictions = 0))
+    }
+
+    @Test
+    fun `should key on any arity`() {
+        val f = memoizeVararg { args -> args.joinToString("") }
+
+        expect(f(1, "b", 3L)).toBe("1b3")
+        expect(f(1, "b", 3L)).toBe("1b3")
+        expect(f(1, "b")).toBe("1b")
+        expect(f.stats).toBe(MemoStats(hits = 1, misses = 2, evictions = 0))
+    }
+
+    @Test
+    fun `should evict least recently used`() {
+        val memo = Memo<Int, Int>(
+            MemoConfig(maximumSize = 2, eviction = Eviction.LRU)
+        ) { it }
+
+        memo[1]
+        memo[2]
+        memo[1]
+        memo[3] // Evicts 2
+        memo[1]
+        memo[2]
+
+        expect(memo.stats).toBe(MemoStats(hits = 2, misses = 4, evictions = 2))
+        expect(memo.size).toBe(2)
+    }
+
+    @Test
+    fun `should keep frequent keys through a scan`() {
+        expect(popularHitsDuringScan(Eviction.LRU)).toBe(0L)
+        expect(popularHitsDuringScan(Eviction.TINY_LFU) > 3_500L).toBe(true)
+    }
+
+    @Test
+    fun `should expire after write`() {
+        var now = 0L
+        val memo = Memo<Int, Int>(
+            MemoConfig(
+                expireAfterWrite = Duration.ofNanos(10L),
+                ticker = { now }
+            )
+        ) { it }
+
+        memo[1]
+        now = 9L
+        memo[1]
+        now = 10L
+        memo[1]
+
+        expect(memo.stats).toBe(MemoStats(hits = 1, misses = 2, evictions = 1))
+    }
+
+    @Test
+    fun `should recurse from many threads`() {
+        lateinit var fib: Memoized1<Long, Long>
+        fib = { n: Long ->
+            if (2 > n) n else fib(n - 1) + fib(n - 2)
+        }.memoize(MemoConfig(maximumSize = 32))
+        val threads = newFixedThreadPool(4)
+
+        val answers = (1..8).map { threads.submit<Long> { fib(90) } }
+
+        answers.forEach { expect(it.get()).toBe(2_880_067_194_370_816_120L) }
+        threads.shutdown()
+    }
+}
+
+/** Cycles 50 popular keys, one every 5th lookup, through a long scan. */
+private fun popularHitsDuringScan(eviction: Eviction): Long {
+    var popularHits = 0L
+    val memo = Memo<Int, Int>(MemoConfig(100, eviction = eviction)) { it }
+    for (i in 0 until 20_000) {
+        memo[100 + i]
+        if (0 != i % 4) continue
+        val hits = memo.stats.hits
+        memo[i / 4 % 50]
+        popularHits += memo.stats.hits - hits
+    }
+    return popularHits
+}
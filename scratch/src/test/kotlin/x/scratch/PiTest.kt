@@ -2,13 +2,37 @@ package x.scratch
 
 import ch.tutteli.atrium.api.fluent.en_GB.toBe
 import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
 import x.scratch.Pi.Companion.generatePiDigits
+import java.nio.ByteBuffer
+import java.nio.file.Files.createTempFile
+import java.nio.file.Files.delete
+import java.nio.file.Files.write
+import java.nio.file.Path
 
 /**
  * See <a href="http://www.geom.uiuc.edu/~huberty/math5337/groupe/digits.html"><cite>100,000 Digits of Pi</cite></a>
  */
 internal class PiTest {
+    @TempDir
+    lateinit var temp: Path
+    private var saved: String? = null
+
+    /** Keeps computed digits out of the shared cache in the temp directory. */
+    @BeforeEach
+    fun setUp() {
+        saved = System.setProperty(CACHE, "${temp.resolve("pi-digits")}")
+    }
+
+    @AfterEach
+    fun tearDown() {
+        saved?.let { System.setProperty(CACHE, it) }
+            ?: System.clearProperty(CACHE)
+    }
+
     @Test
     fun `should generate a bunch of PI digits`() {
         val pi = generatePiDigits()
@@ -23,10 +47,73 @@ internal class PiTest {
         expect(str).toBe(many)
     }
 
+    @Test
+    fun `should reach the Feynman point`() {
+        val digits = PiDigits.atLeast(768)
+
+        expect((762 until 768).map { digits[it] }).toBe(List(6) { 9 })
+    }
+
+    @Test
+    fun `should miss on a damaged cache`() {
+        fun header(size: Int) = ByteBuffer.allocate(4).putInt(size).array()
+
+        listOf(
+            ByteArray(0),
+            ByteArray(3),
+            header(100) + ByteArray(10),
+            header(-1),
+        ).forEach { bytes ->
+            val path = createTempFile("pi", ".digits")
+            try {
+                write(path, bytes)
+                expect(PiDigits.load(path)).toBe(null)
+            } finally {
+                delete(path)
+            }
+        }
+
+        val path = createTempFile("pi", ".digits")
+        try {
+            write(path, header(3) + byteArrayOf(0x31, 0x40))
+            val digits = PiDigits.load(path)!!
+            expect((0 until digits.size).map { digits[it] })
+                .toBe(listOf(3, 1, 4))
+        } finally {
+            delete(path)
+        }
+    }
+
     @Test
     fun `should find first subsequence in PI`() {
         val position = findInPi("BfJ")
 
         expect(position).toBe(3)
     }
+
+    @Test
+    fun `should find many subsequences in one pass`() {
+        val strs = ('A'..'Z').flatMap { a -> ('A'..'Z').map { b -> "$a$b" } }
+        val reported = mutableListOf<String>()
+
+        val found = findInPi(strs) { str, _ -> reported += str }
+
+        expect(found.keys).toBe(strs.toSet())
+        expect(reported.toSet()).toBe(strs.toSet())
+        val digits = PiDigits.atLeast(found.values.maxOrNull()!! + 4)
+        val pi = (0 until digits.size).joinToString("") { "${digits[it]}" }
+        found.forEach { (str, position) ->
+            val encoded = str.map { it - 'A' }.joinToString("")
+            expect(position).toBe(pi.indexOf(encoded))
+        }
+    }
+
+    @Test
+    fun `should stop at limit`() {
+        val found = findInPi(listOf("BfJ", "ZZZZZZ"), limit = 100)
+
+        expect(found).toBe(mapOf("BfJ" to 3))
+    }
 }
+
+private const val CACHE = "x.scratch.pi.cache"
@@ -0,0 +1,45 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+
+internal class PrimesTest {
+    @Test
+    fun `should agree with trial division`() {
+        val limit = 100_000L
+        val sieve = PrimeSieve(limit)
+
+        for (n in 0L..limit) {
+            val prime = 2L <= n && (2L..n).takeWhile { it * it <= n }
+                .none { 0L == n % it }
+            expect(sieve.isPrime(n)).toBe(prime)
+            expect(n.isPrime()).toBe(prime)
+        }
+    }
+
+    @Test
+    fun `should count primes across segments`() {
+        expect(PrimeSieve(10_000_000L).count).toBe(664_579L)
+        expect(PrimeSieve(1L).count).toBe(0L)
+        expect(PrimeSieve(2L).count).toBe(1L)
+    }
+
+    @Test
+    fun `should test 64-bit primes`() {
+        expect(2_305_843_009_213_693_951L.isPrime()).toBe(true) // 2^61-1
+        expect(3_215_031_751L.isPrime()).toBe(false) // 151 * 751 * 28351
+        expect(9_223_372_036_854_775_783L.isPrime()).toBe(true)
+        expect(Long.MAX_VALUE.isPrime()).toBe(false)
+    }
+
+    @Test
+    fun `should factor by smallest prime factors`() {
+        val factors = SmallestPrimeFactors(1_000_000)
+
+        expect(factors.factorize(360)).toBe(listOf(2, 2, 2, 3, 3, 5))
+        expect(factors.factorize(999_983)).toBe(listOf(999_983))
+        expect(factors.distinctFactors(999_999))
+            .toBe(setOf(3, 7, 11, 13, 37))
+    }
+}
@@ -0,0 +1,98 @@
+package x.scratch
+
+import ch.tutteli.atrium.api.fluent.en_GB.toBe
+import ch.tutteli.atrium.api.verbs.expect
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+internal class PrimitiveMatricesTest {
+    @Test
+    fun `should agree with the generic matrices`() {
+        val random = Random(1L)
+        repeat(100) {
+            val m = Matrix2(
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100))
+            )
+            val n = Matrix2(
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100)),
+                MathInt(random.nextInt(-100, 100))
+            )
+
+            expect(m.toLongMatrix2() * n.toLongMatrix2())
+                .toBe((m * n).toLongMatrix2())
+            expect(m.toLongMatrix2().det).toBe(m.det.value.toLong())
+        }
+    }
+
+    @Test
+    fun `should take outer products`() {
+        expect(ColVector2.of(3, 4) * RowVector2.of(1, 2))
+            .toBe(Matrix2(MathInt(3), MathInt(6), MathInt(4), MathInt(8)))
+        expect(LongColVector2(3, 4) * LongRowVector2(1, 2))
+            .toBe(LongMatrix2(3, 6, 4, 8))
+    }
+
+    @Test
+    fun `should raise to powers`() {
+        val fib = LongMatrix2(0, 1, 1, 1)
+        var expected = LongMatrix2.ONE
+        for (n in 0..90) {
+            expect(fib.pow(n)).toBe(expected)
+            expected *= fib
+        }
+        expect(fib.pow(90).b).toBe(2_880_067_194_370_816_120L)
+    }
+
+    @Test
+    fun `should multiply in batches`() {
+        val random = Random(1L)
+        val size = 1_000
+        val left = LongMatrix2Array(size)
+        val right = LongMatrix2Array(size)
+        for (i in 0 until size) {
+            left[i] = LongMatrix2(
+                random.nextLong(-9, 10), random.nextLong(-9, 10),
+                random.nextLong(-9, 10), random.nextLong(-9, 10)
+            )
+            right[i] = LongMatrix2(
+                random.nextLong(-9, 10), random.nextLong(-9, 10),
+                random.nextLong(-9, 10), random.nextLong(-9, 10)
+            )
+        }
+
+        val out = multiply(left, right)
+        for (i in 0 until size)
+            expect(out[i]).toBe(left[i] * right[i])
+
+        val squares = (0 until size).map { left[it] * left[it] }
+        multiply(left, left, left) // In place
+        for (i in 0 until size)
+            expect(left[i]).toBe(squares[i])
+
+        val chain = LongMatrix2Array(3)
+        for (i in 0 until 3) chain[i] = out[i]
+        expect(chain.product()).toBe(out[0] * out[1] * out[2])
+    }
+
+    @Test
+    fun `should chain doubles`() {
+        val size = 360
+        val rotations = DoubleMatrix2Array(size)
+        val theta = 2 * Math.PI / size
+        for (i in 0 until size)
+            rotations[i] = DoubleMatrix2(
+                Math.cos(theta), -Math.sin(theta),
+                Math.sin(theta), Math.cos(theta)
+            )
+
+        val full = rotations.product()
+        expect(Math.abs(full.a - 1.0) < 1e-9).toBe(true)
+        expect(Math.abs(full.b) < 1e-9).toBe(true)
+        expect(Math.abs(full.det - 1.0) < 1e-9).toBe(true)
+    }
+}
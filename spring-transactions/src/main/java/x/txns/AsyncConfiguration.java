@@ -0,0 +1,106 @@
+package x.txns;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.ThreadPoolExecutor.DiscardPolicy;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Runs {@code @Async} methods on a bounded pool, such as {@link
+ * FooOutboxTrigger} dispatching the outbox after commit.  Past
+ * {@code x.txns.async.queue-capacity} waiting tasks, the submitting
+ * thread either runs the task itself, slowing producers to the pace of
+ * the pool, or drops it.  On shutdown the pool finishes queued tasks, up
+ * to {@code x.txns.async.await-termination-seconds}.
+ *
+ * Listeners of {@link FooOutboxPoller} stay synchronous within a batch: a
+ * failure there rolls back the batch for redelivery, which an async
+ * hand-off would lose.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfiguration {
+    /** The bean name {@code @EnableAsync} looks for among executors. */
+    public static final String TASK_EXECUTOR = "taskExecutor";
+
+    public enum Rejection {
+        CALLER_RUNS, DROP
+    }
+
+    @Bean(name = TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor taskExecutor(
+            final MeterRegistry registry,
+            @Value("${x.txns.async.core-size:2}") final int coreSize,
+            @Value("${x.txns.async.max-size:8}") final int maxSize,
+            @Value("${x.txns.async.queue-capacity:1000}")
+            final int queueCapacity,
+            @Value("${x.txns.async.rejection:CALLER_RUNS}")
+            final Rejection rejection,
+            @Value("${x.txns.async.await-termination-seconds:30}")
+            final int awaitTerminationSeconds) {
+        final var executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("txns-async-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+
+        final var rejected = Counter.builder("txns.async.rejected")
+                .description("Tasks run by the caller or dropped")
+                .tag("policy", rejection.name())
+                .register(registry);
+        final RejectedExecutionHandler policy = Rejection.DROP == rejection
+                ? new DiscardPolicy()
+                : new CallerRunsPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            policy.rejectedExecution(task, pool);
+        });
+
+        final var latency = Timer.builder("txns.async.latency")
+                .description("Time from submission to completion")
+                .register(registry);
+        executor.setTaskDecorator(task -> {
+            final var submitted = nanoTime();
+            return () -> {
+                try {
+                    task.run();
+                } finally {
+                    latency.record(nanoTime() - submitted, NANOSECONDS);
+                }
+            };
+        });
+
+        Gauge.builder("txns.async.queued", executor,
+                AsyncConfiguration::queued)
+                .description("Tasks waiting for a thread")
+                .register(registry);
+        Gauge.builder("txns.async.active", executor,
+                ThreadPoolTaskExecutor::getActiveCount)
+                .description("Threads running tasks")
+                .register(registry);
+
+        return executor;
+    }
+
+    private static int queued(final ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor().getQueue().size();
+        } catch (final IllegalStateException notYetInitialized) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package x.txns;
+
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bulk reads and writes of {@link FooRecord}, a round-trip per batch
+ * rather than per row as with {@code CrudRepository.save}, or for the
+ * whole table as with {@link FooRepository#readAll()}.
+ */
+public interface FooBatchRepository {
+    /**
+     * Inserts new {@code foos} with multi-row {@code INSERT ... RETURNING},
+     * setting the generated ids on each.
+     *
+     * @return {@code foos}
+     */
+    <S extends FooRecord> List<S> insertAll(List<S> foos);
+
+    /**
+     * Inserts {@code foos}, or where a key already exists, updates its
+     * value or leaves the row be, with multi-row {@code INSERT ... ON
+     * CONFLICT}.  A duplicate costs neither a savepoint nor an exception.
+     * Sets the id on each foo written, publishing an {@code AfterSaveEvent}
+     * for each as would {@code save}; with {@link OnConflict#NOTHING},
+     * conflicting foos keep their ids as given.
+     *
+     * @throws IllegalArgumentException if a key repeats in {@code foos}
+     */
+    Upserted upsertAll(List<? extends FooRecord> foos, OnConflict onConflict);
+
+    /**
+     * Updates existing {@code foos} as JDBC batches, publishing an
+     * {@code AfterSaveEvent} for each as would {@code save}.
+     *
+     * @return the count of rows updated
+     */
+    int updateAll(Collection<? extends FooRecord> foos);
+
+    /**
+     * Streams all rows through a server-side cursor, holding only
+     * {@code fetchSize} rows at a time.  Postgres uses a cursor only with
+     * auto-commit off, so call within a transaction, and close the stream.
+     *
+     * @throws IllegalStateException if not in a transaction
+     */
+    Stream<FooRecord> streamAll(int fetchSize);
+
+    enum OnConflict {
+        /** Overwrites the existing value. */
+        UPDATE,
+        /** Keeps the existing row. */
+        NOTHING
+    }
+
+    @Value
+    class Upserted {
+        long inserted;
+        long conflicted;
+    }
+}
@@ -0,0 +1,222 @@
+package x.txns;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.relational.core.conversion.AggregateChange;
+import org.springframework.data.relational.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.relational.core.mapping.event.Identifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.lang.Math.min;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.StreamSupport.stream;
+import static org.springframework.data.relational.core.conversion.AggregateChange.Kind.SAVE;
+import static org.springframework.jdbc.datasource.DataSourceUtils.getConnection;
+import static org.springframework.jdbc.datasource.DataSourceUtils.releaseConnection;
+import static org.springframework.jdbc.support.JdbcUtils.closeResultSet;
+import static org.springframework.jdbc.support.JdbcUtils.closeStatement;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive;
+
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+class FooBatchRepositoryImpl
+        implements FooBatchRepository {
+    /** Postgres caps a statement at 32767 bind parameters. */
+    static final int ROWS_PER_INSERT = 1_000;
+    static final int ROWS_PER_BATCH = 1_000;
+
+    static final RowMapper<FooRecord> FOO_ROWS = (row, n) -> new FooRecord(
+            row.getLong("id"), row.getString("key"), row.getInt("value"));
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher publisher;
+
+    @Override
+    public <S extends FooRecord> List<S> insertAll(final List<S> foos) {
+        for (int from = 0; from < foos.size(); from += ROWS_PER_INSERT)
+            insert(foos.subList(
+                    from, min(from + ROWS_PER_INSERT, foos.size())));
+        return foos;
+    }
+
+    @Override
+    public Upserted upsertAll(final List<? extends FooRecord> foos,
+            final OnConflict onConflict) {
+        final var keys = new HashSet<String>(2 * foos.size());
+        for (final var foo : foos)
+            if (!keys.add(foo.getKey()))
+                throw new IllegalArgumentException(
+                        "Duplicate key: " + foo.getKey());
+
+        var inserted = 0L;
+        for (int from = 0; from < foos.size(); from += ROWS_PER_INSERT)
+            inserted += upsert(foos.subList(
+                    from, min(from + ROWS_PER_INSERT, foos.size())),
+                    onConflict);
+        return new Upserted(inserted, foos.size() - inserted);
+    }
+
+    @Override
+    public int updateAll(final Collection<? extends FooRecord> foos) {
+        final var updated = Arrays.stream(jdbc.batchUpdate(
+                "UPDATE FOO SET key = ?, value = ? WHERE id = ?",
+                foos, ROWS_PER_BATCH, (update, foo) -> {
+                    update.setString(1, foo.getKey());
+                    update.setInt(2, foo.getValue());
+                    update.setLong(3, foo.getId());
+                }))
+                .flatMapToInt(Arrays::stream)
+                .sum();
+        foos.forEach(this::publishSaved);
+        return updated;
+    }
+
+    @Override
+    public Stream<FooRecord> streamAll(final int fetchSize) {
+        if (0 >= fetchSize)
+            throw new IllegalArgumentException("Not positive: " + fetchSize);
+        if (!isActualTransactionActive())
+            throw new IllegalStateException(
+                    "Not in a transaction: would read all rows at once");
+
+        final var dataSource = jdbc.getDataSource();
+        final var connection = getConnection(dataSource);
+        PreparedStatement select = null;
+        try {
+            select = connection.prepareStatement("SELECT * FROM FOO");
+            select.setFetchSize(fetchSize);
+            final var rows = select.executeQuery();
+            final var closing = select;
+            return stream(new Cursor(rows), false).onClose(() -> {
+                closeResultSet(rows);
+                closeStatement(closing);
+                releaseConnection(connection, dataSource);
+            });
+        } catch (final SQLException e) {
+            closeStatement(select);
+            releaseConnection(connection, dataSource);
+            throw translate(e);
+        }
+    }
+
+    private RuntimeException translate(final SQLException e) {
+        return jdbc.getExceptionTranslator()
+                .translate("streamAll", "SELECT * FROM FOO", e);
+    }
+
+    private final class Cursor
+            extends AbstractSpliterator<FooRecord> {
+        private final ResultSet rows;
+        private int n;
+
+        private Cursor(final ResultSet rows) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super FooRecord> action) {
+            try {
+                if (!rows.next())
+                    return false;
+                action.accept(FOO_ROWS.mapRow(rows, n++));
+                return true;
+            } catch (final SQLException e) {
+                throw translate(e);
+            }
+        }
+    }
+
+    /** Matches generated ids back by key, as keys are unique. */
+    private void insert(final List<? extends FooRecord> foos) {
+        for (final var foo : foos)
+            if (null != foo.getId())
+                throw new IllegalArgumentException("Not new: " + foo);
+        final var byKey = byKey(foos);
+        jdbc.query(values(foos) + " RETURNING id, key", row -> {
+            byKey.get(row.getString("key")).setId(row.getLong("id"));
+        }, args(foos));
+    }
+
+    /**
+     * Postgres returns only rows written: every row for {@code DO UPDATE},
+     * and only new rows for {@code DO NOTHING}.  A row just inserted has
+     * no deleting transaction, so {@code xmax} is 0; an updated row has
+     * this one.
+     *
+     * @return the count of rows inserted
+     */
+    private long upsert(final List<? extends FooRecord> foos,
+            final OnConflict onConflict) {
+        final var sql = values(foos) + " ON CONFLICT (key) DO "
+                + (OnConflict.UPDATE == onConflict
+                ? "UPDATE SET value = EXCLUDED.value"
+                : "NOTHING")
+                + " RETURNING id, key, xmax = 0 AS inserted";
+        final var byKey = byKey(foos);
+        final var written = new ArrayList<FooRecord>(foos.size());
+        final var inserted = new long[1];
+        jdbc.query(sql, row -> {
+            final var foo = byKey.get(row.getString("key"));
+            foo.setId(row.getLong("id"));
+            written.add(foo);
+            if (row.getBoolean("inserted"))
+                ++inserted[0];
+        }, args(foos));
+
+        written.forEach(this::publishSaved);
+        return inserted[0];
+    }
+
+    private void publishSaved(final FooRecord foo) {
+        publisher.publishEvent(saved(foo));
+    }
+
+    /** As {@code save} would publish, for writes which bypass it. */
+    static AfterSaveEvent saved(final FooRecord foo) {
+        return new AfterSaveEvent(Identifier.of(foo.getId()), foo,
+                new AggregateChange<>(SAVE, FooRecord.class, foo));
+    }
+
+    private static String values(final List<? extends FooRecord> foos) {
+        final var sql = new StringBuilder(
+                "INSERT INTO FOO (key, value) VALUES (?, ?)");
+        for (int i = 1; i < foos.size(); ++i)
+            sql.append(", (?, ?)");
+        return sql.toString();
+    }
+
+    private static Object[] args(final List<? extends FooRecord> foos) {
+        final var args = new Object[2 * foos.size()];
+        for (int i = 0; i < foos.size(); ++i) {
+            args[2 * i] = foos.get(i).getKey();
+            args[2 * i + 1] = foos.get(i).getValue();
+        }
+        return args;
+    }
+
+    private static Map<String, FooRecord> byKey(
+            final List<? extends FooRecord> foos) {
+        final var byKey = new HashMap<String, FooRecord>(2 * foos.size());
+        for (final var foo : foos)
+            byKey.put(foo.getKey(), foo);
+        return byKey;
+    }
+}
@@ -0,0 +1,202 @@
+package x.txns;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.relational.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.relational.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.nanoTime;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResource;
+
+/**
+ * A read-through cache of {@link FooRepository#findByKey(String)}, least
+ * recently used first out past {@code x.txns.cache.maximum-size}.
+ *
+ * Only committed state enters the cache.  Saves and deletes through the
+ * repository evict after commit, found by key or by id.  Until then, the
+ * writing transaction reads those foos from the database, so sees its own
+ * writes.  Reads inside a transaction populate after commit, and only if
+ * nothing was evicted meanwhile: a read of a write later rolled back, as
+ * by a failed nested transaction, never lands.  {@code deleteAll}
+ * publishes no events, so call {@link #clear()} after.
+ */
+@Component
+public class FooCache {
+    private final FooRepository foos;
+    private final int maximumSize;
+    private final Map<String, FooRecord> byKey;
+    private final Map<Long, String> keysById = new HashMap<>();
+    /** Bumped on each eviction, so loads racing one do not populate. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    @Autowired
+    public FooCache(final FooRepository foos,
+            @Value("${x.txns.cache.maximum-size:10000}")
+            final int maximumSize) {
+        this.foos = foos;
+        this.maximumSize = maximumSize;
+        byKey = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, FooRecord> eldest) {
+                if (size() <= FooCache.this.maximumSize)
+                    return false;
+                keysById.remove(eldest.getValue().getId());
+                return true;
+            }
+        };
+    }
+
+    public Optional<FooRecord> findByKey(final String key) {
+        final var written = isSynchronizationActive()
+                ? (Written) getResource(this)
+                : null;
+        synchronized (this) {
+            final var cached = byKey.get(key);
+            if (null != cached && (null == written
+                    || !written.contains(cached.getId(), key))) {
+                hits.incrementAndGet();
+                return Optional.of(copy(cached));
+            }
+        }
+
+        final var epoch = evictions.get();
+        final var start = nanoTime();
+        final var found = foos.findByKey(key);
+        loadNanos.addAndGet(nanoTime() - start);
+        loads.incrementAndGet();
+
+        found.ifPresent(foo -> {
+            final var copy = copy(foo);
+            afterCommit(() -> put(copy, epoch));
+        });
+        return found;
+    }
+
+    public synchronized void clear() {
+        evictions.incrementAndGet();
+        byKey.clear();
+        keysById.clear();
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    /** Of all lookups, the fraction found in the cache. */
+    public double getHitRatio() {
+        final var hits = this.hits.get();
+        final var total = hits + loads.get();
+        return 0L == total ? 0.0 : (double) hits / total;
+    }
+
+    /** Average time loading from the database on a miss. */
+    public long getAverageLoadNanos() {
+        final var loads = this.loads.get();
+        return 0L == loads ? 0L : loadNanos.get() / loads;
+    }
+
+    @EventListener
+    public void onSave(final AfterSaveEvent event) {
+        event.getOptionalEntity()
+                .filter(FooRecord.class::isInstance)
+                .map(FooRecord.class::cast)
+                .ifPresent(foo -> {
+                    written(foo.getId(), foo.getKey());
+                    afterCommit(() -> evict(foo.getId()));
+                });
+    }
+
+    @EventListener
+    public void onDelete(final AfterDeleteEvent event) {
+        if (FooRecord.class != event.getChange().getEntityType())
+            return;
+        final var id = (Long) event.getId().getValue();
+        written(id, null);
+        afterCommit(() -> evict(id));
+    }
+
+    private synchronized void put(final FooRecord foo, final long epoch) {
+        if (epoch != evictions.get())
+            return;
+        byKey.put(foo.getKey(), foo);
+        keysById.put(foo.getId(), foo.getKey());
+    }
+
+    private synchronized void evict(final Long id) {
+        evictions.incrementAndGet();
+        final var key = keysById.remove(id);
+        if (null != key)
+            byKey.remove(key);
+    }
+
+    /**
+     * Records writes of the current transaction, bound to it until it
+     * completes.  Outside a transaction, writes evict at once, so there is
+     * nothing to record.
+     */
+    private void written(final Long id, final String key) {
+        if (!isSynchronizationActive())
+            return;
+        var written = (Written) getResource(this);
+        if (null == written) {
+            written = new Written();
+            bindResource(this, written);
+            registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    unbindResource(FooCache.this);
+                }
+            });
+        }
+        written.ids.add(id);
+        if (null != key)
+            written.keys.add(key);
+    }
+
+    /** Runs now outside a transaction, else only once it commits. */
+    private static void afterCommit(final Runnable action) {
+        if (!isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static FooRecord copy(final FooRecord foo) {
+        return new FooRecord(foo.getId(), foo.getKey(), foo.getValue());
+    }
+
+    private static final class Written {
+        private final Set<Long> ids = new HashSet<>();
+        private final Set<String> keys = new HashSet<>();
+
+        private boolean contains(final Long id, final String key) {
+            return ids.contains(id) || keys.contains(key);
+        }
+    }
+}
@@ -14,7 +14,11 @@ class FooEvent
         super(foo);
     }
 
+    FooRecord getFoo() {
+        return (FooRecord) getSource();
+    }
+
     Long getId() {
-        return ((FooRecord) getSource()).getId();
+        return getFoo().getId();
     }
 }
@@ -3,20 +3,20 @@ package x.txns;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionalEventListener;
 
+/**
+ * Receives events from {@link FooOutboxPoller} after the transactions
+ * recording them commit, with the foos already loaded in bulk.
+ */
 @Component
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class FooListener {
-    private final FooRepository foos;
     private final Logger logger;
 
-    @Async
-    @TransactionalEventListener
+    @EventListener
     public void handleFoo(final FooEvent event) {
-        logger.info("RECEIVED POST-COMMIT: {}",
-                foos.findById(event.getId()).orElseThrow());
+        logger.info("RECEIVED POST-COMMIT: {}", event.getFoo());
     }
 }
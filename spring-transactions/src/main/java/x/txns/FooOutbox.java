@@ -0,0 +1,70 @@
+package x.txns;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+import java.util.Collection;
+
+import static org.springframework.transaction.annotation.Propagation.MANDATORY;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResource;
+
+/**
+ * Records {@link FooEvent}s to publish in the {@code FOO_OUTBOX} table, in
+ * the caller's transaction: events commit or roll back with the changes
+ * they announce, and survive the JVM dying after commit.  See {@link
+ * FooOutboxPoller} for dispatch, and {@link FooOutboxTrigger} for starting
+ * it on commit.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class FooOutbox {
+    private static final String INSERT
+            = "INSERT INTO FOO_OUTBOX (foo_id) VALUES (?)";
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher publisher;
+
+    @Transactional(propagation = MANDATORY)
+    public void record(final FooRecord foo) {
+        jdbc.update(INSERT, foo.getId());
+        recorded();
+    }
+
+    @Transactional(propagation = MANDATORY)
+    public void recordAll(final Collection<? extends FooRecord> foos) {
+        jdbc.batchUpdate(INSERT, foos, foos.size(),
+                (insert, foo) -> insert.setLong(1, foo.getId()));
+        recorded();
+    }
+
+    /** Publishes once per transaction, however many calls record. */
+    private void recorded() {
+        if (null != getResource(this))
+            return;
+        bindResource(this, Boolean.TRUE);
+        registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(final int status) {
+                unbindResource(FooOutbox.this);
+            }
+        });
+        publisher.publishEvent(new Recorded(this));
+    }
+
+    /** Published in the recording transaction: events await dispatch. */
+    static final class Recorded
+            extends ApplicationEvent {
+        private Recorded(final FooOutbox outbox) {
+            super(outbox);
+        }
+    }
+}
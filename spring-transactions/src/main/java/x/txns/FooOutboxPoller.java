@@ -0,0 +1,119 @@
+package x.txns;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Dispatches {@link FooEvent}s from {@link FooOutbox} to listeners, in
+ * batches.  Each batch claims and deletes its outbox rows, loads the foos
+ * with one {@code findAllById}, and publishes in outbox order, all in one
+ * transaction: if a listener fails, the batch rolls back to try again.
+ * Delivery is at least once.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class FooOutboxPoller {
+    static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbc;
+    private final FooRepository foos;
+    private final ApplicationEventPublisher publisher;
+    private final PlatformTransactionManager transactions;
+    private final Logger logger;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    @Scheduled(fixedDelay = 100L)
+    public void poll() {
+        while (BATCH_SIZE == dispatchBatch())
+            continue;
+    }
+
+    /** @return the count of outbox rows dispatched */
+    public int dispatchBatch() {
+        final var claimed = new TransactionTemplate(transactions)
+                .execute(status -> dispatchInTransaction());
+        if (null == claimed || claimed.isEmpty())
+            return 0;
+
+        dispatched.addAndGet(claimed.size());
+        batches.incrementAndGet();
+        lagMillis.set(claimed.get(0).lagMillis);
+        return claimed.size();
+    }
+
+    /** Events dispatched since startup. */
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /** Batches dispatched since startup. */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /** Age of the oldest event in the last batch when dispatched. */
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+
+    private List<Claimed> dispatchInTransaction() {
+        final var claimed = new ArrayList<Claimed>(BATCH_SIZE);
+        jdbc.query("WITH claimed AS (SELECT id FROM FOO_OUTBOX"
+                        + " ORDER BY id"
+                        + " LIMIT ?"
+                        + " FOR UPDATE SKIP LOCKED)"
+                        + " DELETE FROM FOO_OUTBOX o USING claimed"
+                        + " WHERE o.id = claimed.id"
+                        + " RETURNING o.id, o.foo_id,"
+                        + " (EXTRACT(EPOCH FROM"
+                        + " clock_timestamp() - o.created_at)"
+                        + " * 1000)::BIGINT AS lag_millis",
+                row -> {
+                    claimed.add(new Claimed(row.getLong("id"),
+                            row.getLong("foo_id"),
+                            row.getLong("lag_millis")));
+                }, BATCH_SIZE);
+        if (claimed.isEmpty())
+            return claimed;
+        claimed.sort(comparingLong(it -> it.id));
+
+        final var byId = new HashMap<Long, FooRecord>(2 * claimed.size());
+        foos.findAllById(claimed.stream()
+                .map(it -> it.fooId)
+                .collect(toSet()))
+                .forEach(foo -> byId.put(foo.getId(), foo));
+        for (final var event : claimed) {
+            final var foo = byId.get(event.fooId);
+            if (null == foo)
+                logger.warn("SKIPPED DELETED FOO: {}", event.fooId);
+            else
+                publisher.publishEvent(new FooEvent(foo));
+        }
+        return claimed;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Claimed {
+        private final long id;
+        private final long fooId;
+        private final long lagMillis;
+    }
+}
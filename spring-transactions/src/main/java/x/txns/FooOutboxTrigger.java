@@ -0,0 +1,31 @@
+package x.txns;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import static x.txns.AsyncConfiguration.TASK_EXECUTOR;
+
+/**
+ * Dispatches the outbox on the async executor once a transaction recording
+ * events commits, rather than waiting on the next poll.  Polling still
+ * picks up events the executor dropped, and SKIP LOCKED keeps the two from
+ * claiming the same rows.  Off with {@code x.txns.outbox.polling}, as for
+ * {@link SchedulingConfiguration}.
+ */
+@Component
+@ConditionalOnProperty(name = "x.txns.outbox.polling",
+        havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class FooOutboxTrigger {
+    private final FooOutboxPoller poller;
+
+    @Async(TASK_EXECUTOR)
+    @TransactionalEventListener
+    public void dispatch(final FooOutbox.Recorded recorded) {
+        poller.poll();
+    }
+}
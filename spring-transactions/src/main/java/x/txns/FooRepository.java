@@ -4,14 +4,48 @@ import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public interface FooRepository
-        extends CrudRepository<FooRecord, Long> {
+        extends CrudRepository<FooRecord, Long>, FooBatchRepository {
+    /**
+     * Reads the whole table into memory before streaming.  For large
+     * tables, see {@link #streamAll(int)} or {@link #forEachPage(int,
+     * Consumer)}.
+     */
     @Query("SELECT * FROM FOO")
     Stream<FooRecord> readAll();
 
+    /** Keyset pagination: the next {@code limit} rows after {@code id}. */
+    @Query("SELECT * FROM FOO"
+            + " WHERE id > :id"
+            + " ORDER BY id"
+            + " LIMIT :limit")
+    List<FooRecord> findPageAfter(@Param("id") long id,
+            @Param("limit") int limit);
+
+    /**
+     * Hands all rows to {@code consumer} in pages of up to
+     * {@code pageSize}, ordered by id.  Each page is its own query, so
+     * needs no transaction or open cursor between pages.
+     *
+     * @return the count of rows read
+     */
+    default long forEachPage(final int pageSize,
+            final Consumer<List<FooRecord>> consumer) {
+        var count = 0L;
+        var page = findPageAfter(Long.MIN_VALUE, pageSize);
+        while (!page.isEmpty()) {
+            consumer.accept(page);
+            count += page.size();
+            page = findPageAfter(page.get(page.size() - 1).getId(), pageSize);
+        }
+        return count;
+    }
+
     @Query("SELECT * FROM FOO WHERE key = :key")
     Optional<FooRecord> findByKey(@Param("key") String key);
 
@@ -19,4 +53,29 @@ public interface FooRepository
             + " WHERE value = :value"
             + " FOR UPDATE")
     Optional<FooRecord> findByValueWithLock(@Param("value") Integer value);
+
+    @Query("SELECT * FROM FOO"
+            + " WHERE id = :id"
+            + " FOR UPDATE")
+    Optional<FooRecord> findByIdWithLock(@Param("id") long id);
+
+    /**
+     * Increments in the database: no read, and no lock held past it.
+     * Returns the row as written, empty if none has {@code id}.
+     */
+    @Query("UPDATE FOO SET value = value + 1 WHERE id = :id RETURNING *")
+    Optional<FooRecord> incrementById(@Param("id") long id);
+
+    /**
+     * Claims up to {@code limit} rows with {@code value}, passing over rows
+     * other transactions have locked rather than waiting on them.  Claims
+     * last until the calling transaction ends.
+     */
+    @Query("SELECT * FROM FOO"
+            + " WHERE value = :value"
+            + " ORDER BY id"
+            + " LIMIT :limit"
+            + " FOR UPDATE SKIP LOCKED")
+    List<FooRecord> claimByValue(@Param("value") Integer value,
+            @Param("limit") int limit);
 }
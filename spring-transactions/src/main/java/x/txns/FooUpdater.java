@@ -2,11 +2,37 @@ package x.txns;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static x.txns.FooBatchRepositoryImpl.FOO_ROWS;
+import static x.txns.FooBatchRepositoryImpl.saved;
+
+/**
+ * Increments foos by three strategies, from most to least contended:
+ * <ol>
+ * <li>{@link #incrementWithLock(long)} holds a row lock from read to
+ * commit</li>
+ * <li>{@link #incrementOptimistically(long)} takes no lock, and retries if
+ * the row changed since read</li>
+ * <li>{@link #increment(long)} leaves it to a single {@code UPDATE}</li>
+ * </ol>
+ * The last two write around {@code save}, so publish its {@code
+ * AfterSaveEvent} themselves, as for the cache to evict.
+ */
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class FooUpdater {
+    static final int MAX_ATTEMPTS = 10;
+
     private final FooRepository foos;
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher publisher;
+    private final AtomicLong optimisticRetries = new AtomicLong();
 
     @Transactional
     public boolean updateFoo(final int value) {
@@ -18,4 +44,75 @@ public class FooUpdater {
         foos.save(foo);
         return true;
     }
+
+    @Transactional
+    public boolean incrementWithLock(final long id) {
+        final var found = foos.findByIdWithLock(id);
+        if (found.isEmpty())
+            return false;
+        final var foo = found.get();
+        foo.setValue(foo.getValue() + 1);
+        foos.save(foo);
+        return true;
+    }
+
+    /**
+     * Reads the value and version, then writes only if the version is
+     * unchanged.  Every update bumps the version, by trigger.
+     *
+     * @throws OptimisticLockingFailureException if still losing races
+     * after {@link #MAX_ATTEMPTS}
+     */
+    public boolean incrementOptimistically(final long id) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; ++attempt) {
+            final var found = jdbc.query(
+                    "SELECT value, version FROM FOO WHERE id = ?",
+                    (row, n) -> new long[]{row.getLong(1), row.getLong(2)},
+                    id);
+            if (found.isEmpty())
+                return false;
+            final var valueAndVersion = found.get(0);
+            final var written = jdbc.query("UPDATE FOO SET value = ?"
+                            + " WHERE id = ? AND version = ?"
+                            + " RETURNING id, key, value",
+                    FOO_ROWS, valueAndVersion[0] + 1, id, valueAndVersion[1]);
+            if (!written.isEmpty()) {
+                publisher.publishEvent(saved(written.get(0)));
+                return true;
+            }
+            optimisticRetries.incrementAndGet();
+        }
+        throw new OptimisticLockingFailureException(
+                "Gave up incrementing foo " + id + " after " + MAX_ATTEMPTS
+                        + " attempts");
+    }
+
+    public boolean increment(final long id) {
+        final var written = foos.incrementById(id);
+        written.ifPresent(foo -> publisher.publishEvent(saved(foo)));
+        return written.isPresent();
+    }
+
+    /** Optimistic attempts lost to concurrent writers since startup. */
+    public long getOptimisticRetries() {
+        return optimisticRetries.get();
+    }
+
+    /**
+     * Claims a batch of rows with {@code value} and bumps each after
+     * {@code work}.  Unlike {@link #updateFoo(int)}, concurrent callers
+     * claim distinct rows rather than queueing on the same one.
+     *
+     * @return the count of rows updated, 0 when none are left to claim
+     */
+    @Transactional
+    public int updateClaimed(final int value, final int batchSize,
+            final Consumer<FooRecord> work) {
+        final var claimed = foos.claimByValue(value, batchSize);
+        for (final var foo : claimed) {
+            work.accept(foo);
+            foo.setValue(foo.getValue() + 1);
+        }
+        return foos.updateAll(claimed);
+    }
 }
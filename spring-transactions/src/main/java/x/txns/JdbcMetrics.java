@@ -0,0 +1,229 @@
+package x.txns;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Meters the database paths as beans are created:
+ * <ul>
+ * <li>{@code txns.repository} times each {@link FooRepository} method,
+ * tagged by method and exception, and {@code txns.lock.wait} each
+ * {@code ...WithLock} query, which blocks while another transaction holds
+ * the row</li>
+ * <li>{@code txns.rows.streamed} counts rows read through streams and
+ * pages</li>
+ * <li>{@code txns.transaction} times each transaction from begin to
+ * commit or rollback, and {@code txns.savepoints} counts nested
+ * transactions by outcome</li>
+ * <li>gauges and counters of the outbox, cache and updater statistics</li>
+ * </ul>
+ *
+ * Timers publish percentile histograms, for registries which aggregate
+ * them such as Prometheus.  Calls a default repository method makes to
+ * others bypass the proxy, so are not timed separately.
+ */
+public class JdbcMetrics
+        implements BeanPostProcessor {
+    /** Looked up lazily: post-processors come before other beans. */
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public JdbcMetrics(final ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean,
+            final String beanName) {
+        if (bean instanceof FooRepository)
+            return proxy(bean, new RepositoryTimer(registry.getObject()));
+        if (bean instanceof PlatformTransactionManager)
+            return proxy(bean, new TransactionTimer(registry.getObject()));
+
+        if (bean instanceof FooOutboxPoller)
+            bindOutbox((FooOutboxPoller) bean, registry.getObject());
+        else if (bean instanceof FooCache)
+            bindCache((FooCache) bean, registry.getObject());
+        else if (bean instanceof FooUpdater)
+            bindUpdater((FooUpdater) bean, registry.getObject());
+        return bean;
+    }
+
+    private static Object proxy(final Object bean,
+            final MethodInterceptor interceptor) {
+        final var proxy = new ProxyFactory(bean);
+        proxy.addAdvice(interceptor);
+        return proxy.getProxy();
+    }
+
+    private static void bindOutbox(final FooOutboxPoller poller,
+            final MeterRegistry registry) {
+        FunctionCounter.builder("txns.outbox.dispatched", poller,
+                FooOutboxPoller::getDispatched)
+                .description("Events dispatched from the outbox")
+                .register(registry);
+        FunctionCounter.builder("txns.outbox.batches", poller,
+                FooOutboxPoller::getBatches)
+                .description("Outbox batches dispatched")
+                .register(registry);
+        Gauge.builder("txns.outbox.lag", poller,
+                FooOutboxPoller::getLagMillis)
+                .description("Age of the oldest event in the last batch")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    private static void bindCache(final FooCache cache,
+            final MeterRegistry registry) {
+        Gauge.builder("txns.cache.size", cache, FooCache::size)
+                .description("Foos cached by key")
+                .register(registry);
+        Gauge.builder("txns.cache.hit.ratio", cache, FooCache::getHitRatio)
+                .description("Fraction of lookups found in the cache")
+                .register(registry);
+        Gauge.builder("txns.cache.load", cache,
+                FooCache::getAverageLoadNanos)
+                .description("Average time loading on a miss")
+                .baseUnit("nanoseconds")
+                .register(registry);
+    }
+
+    private static void bindUpdater(final FooUpdater updater,
+            final MeterRegistry registry) {
+        FunctionCounter.builder("txns.updater.optimistic.retries", updater,
+                FooUpdater::getOptimisticRetries)
+                .description("Optimistic increments retried on a stale read")
+                .register(registry);
+    }
+
+    private static final class RepositoryTimer
+            implements MethodInterceptor {
+        private final MeterRegistry registry;
+
+        private RepositoryTimer(final MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation)
+                throws Throwable {
+            final var method = invocation.getMethod().getName();
+            final var start = nanoTime();
+            var exception = "none";
+            try {
+                return streamed(method, invocation.proceed());
+            } catch (final Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                final var nanos = nanoTime() - start;
+                Timer.builder("txns.repository")
+                        .description("FooRepository calls")
+                        .tag("method", method)
+                        .tag("exception", exception)
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(nanos, NANOSECONDS);
+                if (method.endsWith("WithLock"))
+                    Timer.builder("txns.lock.wait")
+                            .description("Row lock queries, including"
+                                    + " waiting on other transactions")
+                            .tag("method", method)
+                            .publishPercentileHistogram()
+                            .register(registry)
+                            .record(nanos, NANOSECONDS);
+            }
+        }
+
+        /** Counts stream rows as consumed, and pages when done. */
+        private Object streamed(final String method, final Object result) {
+            if (result instanceof Stream) {
+                final var rows = rows(method);
+                return ((Stream<?>) result).peek(row -> rows.increment());
+            }
+            if ("forEachPage".equals(method))
+                rows(method).increment((Long) result);
+            return result;
+        }
+
+        private Counter rows(final String method) {
+            return Counter.builder("txns.rows.streamed")
+                    .description("Rows read a stream or page at a time")
+                    .tag("method", method)
+                    .register(registry);
+        }
+    }
+
+    private static final class TransactionTimer
+            implements MethodInterceptor {
+        private final MeterRegistry registry;
+        private final Map<TransactionStatus, Long> started
+                = new ConcurrentHashMap<>();
+
+        private TransactionTimer(final MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation)
+                throws Throwable {
+            switch (invocation.getMethod().getName()) {
+            case "getTransaction":
+                final var start = nanoTime();
+                final var status = (TransactionStatus) invocation.proceed();
+                if (status.isNewTransaction())
+                    started.put(status, start);
+                return status;
+            case "commit":
+                return completing(invocation, "commit");
+            case "rollback":
+                return completing(invocation, "rollback");
+            default:
+                return invocation.proceed();
+            }
+        }
+
+        private Object completing(final MethodInvocation invocation,
+                final String method)
+                throws Throwable {
+            final var status = (TransactionStatus) invocation
+                    .getArguments()[0];
+            // Check first: completing clears both
+            final var outcome = status.isRollbackOnly() ? "rollback" : method;
+            if (status.hasSavepoint())
+                Counter.builder("txns.savepoints")
+                        .description("Nested transactions")
+                        .tag("outcome", outcome)
+                        .register(registry)
+                        .increment();
+            final var start = started.remove(status);
+            try {
+                return invocation.proceed();
+            } finally {
+                if (null != start)
+                    Timer.builder("txns.transaction")
+                            .description("Transactions, begin to end")
+                            .tag("outcome", outcome)
+                            .publishPercentileHistogram()
+                            .register(registry)
+                            .record(nanoTime() - start, NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package x.txns;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters the database paths with {@link JdbcMetrics}.  Keeps meters in
+ * memory unless a real registry is configured, such as with Spring Boot
+ * actuator and a Prometheus or StatsD registry.
+ *
+ * An auto-configuration, listed in {@code META-INF/spring.factories}, so
+ * the in-memory registry backs off: {@code @ConditionalOnMissingBean} in
+ * a user configuration is evaluated before others define their beans.
+ * Component scanning skips auto-configurations, and tests import it.
+ */
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure"
+        + ".metrics.CompositeMeterRegistryAutoConfiguration")
+@Configuration
+public class MetricsConfiguration {
+    @Bean
+    @ConditionalOnMissingBean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public static JdbcMetrics jdbcMetrics(
+            final ObjectProvider<MeterRegistry> registry) {
+        return new JdbcMetrics(registry);
+    }
+}
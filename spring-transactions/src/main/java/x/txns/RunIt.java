@@ -4,7 +4,6 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.data.relational.core.conversion.DbActionExecutionException;
 import org.springframework.stereotype.Component;
@@ -17,9 +16,11 @@ import static org.springframework.core.NestedExceptionUtils.getMostSpecificCause
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class RunIt
         implements ApplicationListener<ApplicationReadyEvent> {
+    private static final int PAGE_SIZE = 1_000;
+
     private final FooRepository foos;
     private final FailedNestedTransaction nested;
-    private final ApplicationEventPublisher publisher;
+    private final FooOutbox outbox;
     private final Logger logger;
 
     @Override
@@ -38,10 +39,10 @@ public class RunIt
 
         logger.warn("BRAVELY CONTINUED ON");
 
-        foos.readAll()
-                .map(FooEvent::new)
-                .peek(publisher::publishEvent)
-                .forEach(event -> logger.info("PUBLISHED: {}", event));
+        foos.forEachPage(PAGE_SIZE, page -> {
+            outbox.recordAll(page);
+            page.forEach(foo -> logger.info("PUBLISHED: {}", foo));
+        });
 
         logger.info("END OF PUBLISHING");
     }
@@ -0,0 +1,17 @@
+package x.txns;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs {@link FooOutboxPoller} in the background unless
+ * {@code x.txns.outbox.polling} is false, as in tests which dispatch by
+ * hand.
+ */
+@ConditionalOnProperty(name = "x.txns.outbox.polling",
+        havingValue = "true", matchIfMissing = true)
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
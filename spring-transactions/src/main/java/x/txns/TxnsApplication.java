@@ -2,21 +2,21 @@ package x.txns;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static x.txns.AsyncConfiguration.TASK_EXECUTOR;
 
-@EnableAsync
 @SpringBootApplication
 public class TxnsApplication {
-    public static void main(final String... args)
-            throws InterruptedException {
+    public static void main(final String... args) {
         // FYI -- using the try-block shuts down the program after
         // the command-line runner finishes: Faster feedback cycle
         try (final var context = SpringApplication
                 .run(TxnsApplication.class, args)) {
-            // Let post-commit event listeners run in thread pool
-            SECONDS.sleep(2L);
+            // RunIt's commit started dispatch on the async executor: let
+            // it finish before closing takes away the data source
+            context.getBean(TASK_EXECUTOR, ThreadPoolTaskExecutor.class)
+                    .shutdown();
         }
     }
 }
@@ -0,0 +1,6 @@
+CREATE TABLE FOO_OUTBOX
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    foo_id     BIGINT      NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp()
+);
@@ -0,0 +1,17 @@
+ALTER TABLE FOO
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Every writer bumps the version, not only the optimistic ones
+CREATE FUNCTION bump_foo_version() RETURNS TRIGGER AS
+$$
+BEGIN
+    NEW.version = OLD.version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER foo_version
+    BEFORE UPDATE
+    ON FOO
+    FOR EACH ROW
+EXECUTE PROCEDURE bump_foo_version();
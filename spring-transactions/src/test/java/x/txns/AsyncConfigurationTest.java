@@ -0,0 +1,116 @@
+package x.txns;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static x.txns.AsyncConfiguration.Rejection.CALLER_RUNS;
+import static x.txns.AsyncConfiguration.Rejection.DROP;
+
+class AsyncConfigurationTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ThreadPoolTaskExecutor executor;
+
+    @AfterEach
+    void cleanUp() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldRunInCallerWhenFull()
+            throws InterruptedException {
+        executor = executor(CALLER_RUNS);
+        fill();
+
+        final var ranIn = new AtomicReference<Thread>();
+        executor.execute(() -> ranIn.set(currentThread()));
+
+        assertThat(ranIn.get()).isSameAs(currentThread());
+        assertThat(registry.get("txns.async.rejected").counter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("txns.async.queued").gauge().value())
+                .isEqualTo(1.0);
+        assertThat(registry.get("txns.async.active").gauge().value())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDropWhenFull()
+            throws InterruptedException {
+        executor = executor(DROP);
+        fill();
+
+        final var ran = new AtomicInteger();
+        executor.execute(ran::incrementAndGet);
+        release.countDown();
+        executor.shutdown();
+
+        assertThat(ran.get()).isZero();
+        assertThat(registry.get("txns.async.rejected").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDrainOnShutdown() {
+        executor = executor(CALLER_RUNS);
+
+        final var ran = new AtomicInteger();
+        for (int i = 0; i < 2; ++i)
+            executor.execute(() -> {
+                sleep();
+                ran.incrementAndGet();
+            });
+        executor.shutdown();
+
+        assertThat(ran.get()).isEqualTo(2);
+        assertThat(registry.get("txns.async.latency").timer().count())
+                .isEqualTo(2L);
+    }
+
+    /** One thread, one queue slot: blocks the thread and fills the slot. */
+    private ThreadPoolTaskExecutor executor(
+            final AsyncConfiguration.Rejection rejection) {
+        final var executor = new AsyncConfiguration()
+                .taskExecutor(registry, 1, 1, 1, rejection, 5);
+        executor.initialize();
+        return executor;
+    }
+
+    private void fill()
+            throws InterruptedException {
+        final var started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await();
+        });
+        started.await(5L, SECONDS);
+        executor.execute(this::await);
+    }
+
+    private void await() {
+        try {
+            release.await(5L, SECONDS);
+        } catch (final InterruptedException e) {
+            currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            MILLISECONDS.sleep(50L);
+        } catch (final InterruptedException e) {
+            currentThread().interrupt();
+        }
+    }
+}
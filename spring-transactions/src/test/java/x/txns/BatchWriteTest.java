@@ -0,0 +1,78 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import static x.txns.FooBatchRepositoryImpl.ROWS_PER_INSERT;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Transactional
+class BatchWriteTest {
+    private static final int ROWS = 50_000;
+
+    @Autowired
+    private FooRepository foos;
+    @SpyBean
+    private JdbcTemplate jdbc;
+
+    @Test
+    void shouldInsertAndUpdateInBulk() {
+        final var batch = range(0, ROWS)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, i))
+                .collect(toList());
+
+        foos.insertAll(batch);
+
+        // A statement per thousand rows, rather than one per row
+        assertThat(statements()).isEqualTo(ROWS / ROWS_PER_INSERT);
+
+        assertThat(batch)
+                .extracting(FooRecord::getId)
+                .doesNotContainNull()
+                .doesNotHaveDuplicates();
+        assertThat(foos.count()).isEqualTo(ROWS);
+        final var some = batch.get(ROWS / 2);
+        assertThat(foos.findById(some.getId())).contains(some);
+
+        batch.forEach(foo -> foo.setValue(-foo.getValue()));
+        clearInvocations(jdbc);
+
+        assertThat(foos.updateAll(batch)).isEqualTo(ROWS);
+        // One JDBC batch, rather than a statement per row
+        assertThat(statements()).isOne();
+        assertThat(foos.findByKey(some.getKey()).orElseThrow().getValue())
+                .isEqualTo(-ROWS / 2);
+    }
+
+    @Test
+    void shouldRejectSavedRecords() {
+        final var saved = foos.save(new FooRecord(null, "FOO", 1));
+
+        assertThatThrownBy(() -> foos.insertAll(List.of(saved)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Prepared statements, however called, are made in this overload. */
+    private long statements() {
+        return mockingDetails(jdbc).getInvocations().stream()
+                .filter(call -> "execute".equals(call.getMethod().getName()))
+                .filter(call -> call.getArgument(0)
+                        instanceof PreparedStatementCreator)
+                .count();
+    }
+}
@@ -0,0 +1,271 @@
+package x.txns;
+
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import static java.lang.Math.pow;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static java.util.stream.StreamSupport.stream;
+
+/**
+ * Drives {@link FooUpdater} from many threads against the database, and
+ * reports throughput, latency, retries and failures.  Each operation
+ * increments {@link #rowsPerTransaction(int)} rows in one transaction,
+ * picked from {@link #rows(int)} with Zipfian {@link #skew(double)}: 0 is
+ * uniform, and higher crowds onto the first rows.  Transactions touching
+ * several distinct rows lock them in random order, so may deadlock.
+ */
+final class ContentionBenchmark {
+    enum Strategy {
+        LOCK(FooUpdater::incrementWithLock),
+        OPTIMISTIC(FooUpdater::incrementOptimistically),
+        SET(FooUpdater::increment);
+
+        private final BiPredicate<FooUpdater, Long> increment;
+
+        Strategy(final BiPredicate<FooUpdater, Long> increment) {
+            this.increment = increment;
+        }
+    }
+
+    private final FooRepository foos;
+    private final FooUpdater updater;
+    private final TransactionTemplate transaction;
+
+    private int threads = 8;
+    private int rows = 1;
+    private double skew;
+    private int rowsPerTransaction = 1;
+    private int operationsPerThread = 10;
+    private long seed = 1L;
+
+    ContentionBenchmark(final FooRepository foos, final FooUpdater updater,
+            final PlatformTransactionManager transactions) {
+        this.foos = foos;
+        this.updater = updater;
+        transaction = new TransactionTemplate(transactions);
+    }
+
+    ContentionBenchmark threads(final int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    ContentionBenchmark rows(final int rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    ContentionBenchmark skew(final double skew) {
+        this.skew = skew;
+        return this;
+    }
+
+    ContentionBenchmark rowsPerTransaction(final int rowsPerTransaction) {
+        this.rowsPerTransaction = rowsPerTransaction;
+        return this;
+    }
+
+    ContentionBenchmark operationsPerThread(final int operationsPerThread) {
+        this.operationsPerThread = operationsPerThread;
+        return this;
+    }
+
+    ContentionBenchmark seed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Runs against fresh rows, deleting all others first. */
+    Result run(final Strategy strategy)
+            throws Exception {
+        if (rowsPerTransaction > rows)
+            throw new IllegalArgumentException(
+                    "More rows per transaction than rows: "
+                            + rowsPerTransaction + " > " + rows);
+        foos.deleteAll();
+        final var ids = foos.insertAll(range(0, rows)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, 0))
+                .collect(toList()))
+                .stream()
+                .mapToLong(FooRecord::getId)
+                .toArray();
+        final var zipf = cumulativeZipf(rows, skew);
+
+        final var retries = updater.getOptimisticRetries();
+        final var committed = new AtomicInteger();
+        final var gaveUp = new AtomicInteger();
+        final var deadlocks = new AtomicInteger();
+        final var latencies = new long[threads][operationsPerThread];
+        final var tasks = new ArrayList<Callable<Void>>(threads);
+        for (int t = 0; t < threads; ++t) {
+            final var random = new Random(seed + t);
+            final var latency = latencies[t];
+            tasks.add(() -> {
+                for (int n = 0; n < operationsPerThread; ++n) {
+                    final var picked = pickDistinct(ids, zipf, random);
+                    final var start = nanoTime();
+                    try {
+                        if (operate(strategy, picked))
+                            committed.incrementAndGet();
+                    } catch (final RuntimeException e) {
+                        if (causedBy(e,
+                                DeadlockLoserDataAccessException.class))
+                            deadlocks.incrementAndGet();
+                        else if (causedBy(e,
+                                OptimisticLockingFailureException.class))
+                            gaveUp.incrementAndGet();
+                        else
+                            throw e;
+                    }
+                    latency[n] = nanoTime() - start;
+                }
+                return null;
+            });
+        }
+
+        final var pool = newFixedThreadPool(threads);
+        final var start = nanoTime();
+        try {
+            for (final var done : pool.invokeAll(tasks))
+                done.get();
+        } finally {
+            pool.shutdown();
+        }
+        final var nanos = nanoTime() - start;
+
+        final var total = stream(foos.findAll().spliterator(), false)
+                .mapToLong(FooRecord::getValue)
+                .sum();
+        final var sorted = Arrays.stream(latencies)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        return new Result(strategy, threads, rows, skew, rowsPerTransaction,
+                committed.get(), gaveUp.get(), deadlocks.get(),
+                updater.getOptimisticRetries() - retries, nanos,
+                sorted[(int) (0.99 * (sorted.length - 1))],
+                (long) committed.get() * rowsPerTransaction - total);
+    }
+
+    private boolean operate(final Strategy strategy, final long[] ids) {
+        if (1 == ids.length)
+            return strategy.increment.test(updater, ids[0]);
+        return Boolean.TRUE.equals(transaction.execute(status -> {
+            for (final var id : ids)
+                if (!strategy.increment.test(updater, id))
+                    throw new IllegalStateException("Missing foo: " + id);
+            return true;
+        }));
+    }
+
+    /** Spring Data wraps failures in {@code save}, so look through. */
+    static boolean causedBy(final Throwable e,
+            final Class<? extends Throwable> type) {
+        for (var cause = e; null != cause; cause = cause.getCause())
+            if (type.isInstance(cause))
+                return true;
+        return false;
+    }
+
+    /** Rank {@code k} weighs {@code 1 / (k + 1)^skew}. */
+    private static double[] cumulativeZipf(final int rows,
+            final double skew) {
+        final var cumulative = new double[rows];
+        var sum = 0.0;
+        for (int k = 0; k < rows; ++k)
+            cumulative[k] = sum += 1.0 / pow(k + 1, skew);
+        for (int k = 0; k < rows; ++k)
+            cumulative[k] /= sum;
+        return cumulative;
+    }
+
+    /**
+     * Redraws repeats, so a transaction never increments a row twice: a
+     * row it already locked would not contend.
+     */
+    private long[] pickDistinct(final long[] ids, final double[] zipf,
+            final Random random) {
+        final var picked = new long[rowsPerTransaction];
+        for (int i = 0; i < rowsPerTransaction; ) {
+            final var id = ids[pick(zipf, random)];
+            if (range(0, i).noneMatch(j -> id == picked[j]))
+                picked[i++] = id;
+        }
+        return picked;
+    }
+
+    private static int pick(final double[] cumulative, final Random random) {
+        final var found = Arrays.binarySearch(
+                cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1,
+                0 <= found ? found : -found - 1);
+    }
+
+    static final class Result {
+        final Strategy strategy;
+        final int threads;
+        final int rows;
+        final double skew;
+        final int rowsPerTransaction;
+        final int committed;
+        final int gaveUp;
+        final int deadlocks;
+        final long retries;
+        final long nanos;
+        final long p99Nanos;
+        /** Increments committed but missing from the table. */
+        final long lost;
+
+        private Result(final Strategy strategy, final int threads,
+                final int rows, final double skew,
+                final int rowsPerTransaction, final int committed,
+                final int gaveUp, final int deadlocks, final long retries,
+                final long nanos, final long p99Nanos, final long lost) {
+            this.strategy = strategy;
+            this.threads = threads;
+            this.rows = rows;
+            this.skew = skew;
+            this.rowsPerTransaction = rowsPerTransaction;
+            this.committed = committed;
+            this.gaveUp = gaveUp;
+            this.deadlocks = deadlocks;
+            this.retries = retries;
+            this.nanos = nanos;
+            this.p99Nanos = p99Nanos;
+            this.lost = lost;
+        }
+
+        double getThroughput() {
+            return committed * 1e9 / nanos;
+        }
+
+        static String header() {
+            return String.format(
+                    "%-10s %7s %6s %4s %7s %9s %9s %7s %7s %9s",
+                    "STRATEGY", "THREADS", "ROWS", "SKEW", "ROWS/TX",
+                    "OPS/S", "P99 MS", "RETRIES", "GAVE UP", "DEADLOCKS");
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%-10s %7d %6d %4.1f %7d %9.0f %9.1f %7d %7d %9d",
+                    strategy, threads, rows, skew, rowsPerTransaction,
+                    getThroughput(), p99Nanos / 1e6, retries, gaveUp,
+                    deadlocks);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,9 +46,15 @@ class DatabaseTest {
         public RunIt runIt(
                 final FooRepository foos,
                 final FailedNestedTransaction nested,
-                final ApplicationEventPublisher publisher,
+                final FooOutbox outbox,
                 final Logger logger) {
-            return new RunIt(foos, nested, publisher, logger);
+            return new RunIt(foos, nested, outbox, logger);
+        }
+
+        @Bean
+        public FooOutbox outbox(final JdbcTemplate jdbc,
+                final ApplicationEventPublisher publisher) {
+            return new FooOutbox(jdbc, publisher);
         }
 
         @Bean
@@ -0,0 +1,169 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_NESTED;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest(properties = "x.txns.cache.maximum-size=100")
+@Import({FooCache.class, FooUpdater.class})
+// @Transactional <-- Important NOT to make test transactional
+class FooCacheTest {
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooCache cache;
+    @Autowired
+    private FooUpdater updater;
+    @Autowired
+    private PlatformTransactionManager transactions;
+
+    @AfterEach
+    @BeforeEach
+    void cleanUp() {
+        foos.deleteAll();
+        cache.clear();
+    }
+
+    @Test
+    void shouldReadThrough() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        final var ratio = cache.getHitRatio();
+
+        assertThat(cache.findByKey("FOO")).contains(foo);
+        assertThat(cache.findByKey("FOO")).contains(foo);
+        assertThat(cache.size()).isOne();
+        assertThat(cache.getHitRatio()).isGreaterThan(ratio);
+        assertThat(cache.getAverageLoadNanos()).isPositive();
+    }
+
+    @Test
+    void shouldEvictAfterCommit() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        cache.findByKey("FOO");
+
+        foo.setValue(2);
+        foos.save(foo);
+
+        assertThat(cache.findByKey("FOO")).contains(foo);
+    }
+
+    @Test
+    void shouldEvictAfterBatchUpdate() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        cache.findByKey("FOO");
+
+        foo.setValue(2);
+        foos.updateAll(List.of(foo));
+
+        assertThat(cache.findByKey("FOO")).contains(foo);
+    }
+
+    @Test
+    void shouldEvictAfterIncrements() {
+        final var id = foos.save(new FooRecord(null, "FOO", 1)).getId();
+        cache.findByKey("FOO");
+
+        // Each strategy, including those writing around save
+        updater.incrementWithLock(id);
+        assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                .isEqualTo(2);
+        updater.incrementOptimistically(id);
+        assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                .isEqualTo(3);
+        updater.increment(id);
+        assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                .isEqualTo(4);
+    }
+
+    @Test
+    void shouldReadOwnWritesBeforeCommit() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        cache.findByKey("FOO");
+
+        new TransactionTemplate(transactions).execute(status -> {
+            foos.save(new FooRecord(foo.getId(), "FOO", 2));
+            assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                    .isEqualTo(2);
+            return null;
+        });
+        cache.findByKey("FOO");
+        new TransactionTemplate(transactions).execute(status -> {
+            foos.deleteById(foo.getId());
+            assertThat(cache.findByKey("FOO")).isEmpty();
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictByIdAfterDelete() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        cache.findByKey("FOO");
+
+        foos.deleteById(foo.getId());
+
+        assertThat(cache.findByKey("FOO")).isEmpty();
+    }
+
+    @Test
+    void shouldNotCacheRolledBackWrites() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+
+        new TransactionTemplate(transactions).execute(status -> {
+            foos.save(new FooRecord(foo.getId(), "FOO", 2));
+            assertThat(cache.findByKey("FOO").orElseThrow().getValue())
+                    .isEqualTo(2);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.findByKey("FOO")).contains(foo);
+    }
+
+    @Test
+    void shouldNotCacheRolledBackNestedWrites() {
+        final var foo = foos.save(new FooRecord(null, "FOO", 1));
+        final var nested = new TransactionTemplate(transactions);
+        nested.setPropagationBehavior(PROPAGATION_NESTED);
+
+        new TransactionTemplate(transactions).execute(outer ->
+                nested.execute(status -> {
+                    foos.save(new FooRecord(foo.getId(), "FOO", 2));
+                    cache.findByKey("FOO");
+                    status.setRollbackOnly();
+                    return null;
+                }));
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.findByKey("FOO")).contains(foo);
+    }
+
+    @Test
+    void shouldBoundSize() {
+        final var saved = foos.insertAll(range(0, 150)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, i))
+                .collect(toList()));
+
+        saved.forEach(foo -> cache.findByKey(foo.getKey()));
+
+        assertThat(cache.size()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,209 @@
+package x.txns;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_NESTED;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Import({MetricsConfiguration.class, FooUpdater.class})
+// @Transactional <-- Important NOT to make test transactional
+class JdbcMetricsTest {
+    private static final int VALUE = 17;
+
+    @Autowired
+    private MeterRegistry registry;
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooUpdater updater;
+    @Autowired
+    private PlatformTransactionManager transactions;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    @BeforeEach
+    void cleanUp() {
+        foos.deleteAll();
+        registry.getMeters().forEach(registry::remove);
+    }
+
+    @Test
+    void shouldBackOffFromAnotherRegistry() {
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(
+                        MetricsConfiguration.class))
+                .withUserConfiguration(OtherRegistry.class)
+                .run(context -> assertThat(context)
+                        .getBean(MeterRegistry.class)
+                        .isInstanceOf(CompositeMeterRegistry.class));
+    }
+
+    @Test
+    void shouldTimeQueries() {
+        foos.findByKey("FOO");
+        foos.findByKey("FOO");
+
+        assertThat(registry.get("txns.repository")
+                .tag("method", "findByKey")
+                .tag("exception", "none")
+                .timer().count())
+                .isEqualTo(2L);
+    }
+
+    @Test
+    void shouldTimeLockWaits()
+            throws Exception {
+        foos.save(new FooRecord(null, "FOO", VALUE));
+        final var locked = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var threads = newFixedThreadPool(2);
+
+        final var held = threads.submit(() -> new TransactionTemplate(
+                transactions).execute(status -> {
+            foos.findByValueWithLock(VALUE);
+            locked.countDown();
+            await(release);
+            return null;
+        }));
+        assertThat(locked.await(5L, SECONDS)).isTrue();
+        final var waiting = threads.submit(() -> updater.updateFoo(VALUE));
+        awaitBlocked();
+        final var blocked = nanoTime();
+
+        final var waits = registry.get("txns.lock.wait")
+                .tag("method", "findByValueWithLock")
+                .timer();
+        // Recorded only once the wait is over
+        assertThat(waits.count()).isOne();
+
+        sleep();
+        final var blockedFor = nanoTime() - blocked;
+        release.countDown();
+        held.get();
+        assertThat(waiting.get()).isTrue();
+        threads.shutdown();
+
+        assertThat(waits.count()).isEqualTo(2L);
+        // Started before the block was seen, ended after the release
+        assertThat(waits.max(NANOSECONDS)).isGreaterThan(blockedFor);
+    }
+
+    @Test
+    void shouldTimeTransactionsAndCountSavepoints() {
+        final var outer = new TransactionTemplate(transactions);
+        final var nested = new TransactionTemplate(transactions);
+        nested.setPropagationBehavior(PROPAGATION_NESTED);
+
+        outer.execute(status -> {
+            nested.execute(inner -> foos.save(
+                    new FooRecord(null, "FOO", VALUE)));
+            nested.execute(inner -> {
+                inner.setRollbackOnly();
+                return null;
+            });
+            return null;
+        });
+        outer.execute(status -> {
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(registry.get("txns.transaction")
+                .tag("outcome", "commit").timer().count())
+                .isEqualTo(1L);
+        assertThat(registry.get("txns.transaction")
+                .tag("outcome", "rollback").timer().count())
+                .isEqualTo(1L);
+        assertThat(registry.get("txns.savepoints")
+                .tag("outcome", "commit").counter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("txns.savepoints")
+                .tag("outcome", "rollback").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldCountRowsStreamed() {
+        foos.insertAll(range(0, 25)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, i))
+                .collect(toList()));
+
+        new TransactionTemplate(transactions).execute(status -> {
+            try (final var rows = foos.streamAll(10)) {
+                return rows.collect(toList());
+            }
+        });
+        foos.forEachPage(10, page -> {
+        });
+
+        assertThat(registry.get("txns.rows.streamed")
+                .tag("method", "streamAll").counter().count())
+                .isEqualTo(25.0);
+        assertThat(registry.get("txns.rows.streamed")
+                .tag("method", "forEachPage").counter().count())
+                .isEqualTo(25.0);
+    }
+
+    /** Not {@code @Configuration}: the test would take it for its own. */
+    static class OtherRegistry {
+        @Bean
+        public MeterRegistry otherRegistry() {
+            return new CompositeMeterRegistry();
+        }
+    }
+
+    /** Polls until a query waits on a row lock. */
+    private void awaitBlocked()
+            throws InterruptedException {
+        for (int n = 0; n < 500; ++n) {
+            if (0 < jdbc.queryForObject(
+                    "SELECT count(*) FROM pg_locks WHERE NOT granted",
+                    Integer.class))
+                return;
+            MILLISECONDS.sleep(10L);
+        }
+        throw new AssertionError("Never blocked on the row lock");
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5L, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            MILLISECONDS.sleep(50L);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Import({FooOutbox.class, FooOutboxPoller.class,
+        LoggingConfiguration.class, OutboxTest.Received.class})
+// @Transactional <-- Important NOT to make test transactional
+class OutboxTest {
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooOutbox outbox;
+    @Autowired
+    private FooOutboxPoller poller;
+    @Autowired
+    private Received received;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactions;
+
+    @AfterEach
+    @BeforeEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM FOO_OUTBOX");
+        foos.deleteAll();
+        received.events.clear();
+        received.failNext = false;
+    }
+
+    @Test
+    void shouldDispatchCommittedEventsInBatches() {
+        final var saved = new TransactionTemplate(transactions)
+                .execute(status -> {
+                    final var batch = foos.insertAll(range(0, 1_200)
+                            .mapToObj(i -> new FooRecord(null, "FOO-" + i, i))
+                            .collect(toList()));
+                    outbox.recordAll(batch);
+                    return batch;
+                });
+        final var before = poller.getDispatched();
+
+        assertThat(List.of(poller.dispatchBatch(), poller.dispatchBatch(),
+                poller.dispatchBatch(), poller.dispatchBatch()))
+                .containsExactly(500, 500, 200, 0);
+        assertThat(received.events)
+                .extracting(FooEvent::getFoo)
+                .isEqualTo(saved);
+        assertThat(poller.getDispatched() - before).isEqualTo(1_200L);
+        assertThat(poller.getLagMillis()).isNotNegative();
+    }
+
+    @Test
+    void shouldNotDispatchRolledBackEvents() {
+        new TransactionTemplate(transactions).execute(status -> {
+            outbox.record(foos.save(new FooRecord(null, "FOO", 1)));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(poller.dispatchBatch()).isZero();
+        assertThat(received.events).isEmpty();
+    }
+
+    @Test
+    void shouldRedispatchAfterListenerFails() {
+        new TransactionTemplate(transactions).execute(status -> {
+            outbox.record(foos.save(new FooRecord(null, "FOO", 1)));
+            return null;
+        });
+        received.failNext = true;
+
+        assertThatThrownBy(poller::dispatchBatch)
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(poller.dispatchBatch()).isOne();
+        assertThat(received.events).hasSize(1);
+    }
+
+    static class Received {
+        final List<FooEvent> events = new ArrayList<>();
+        boolean failNext;
+
+        @EventListener
+        public void receive(final FooEvent event) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("Listener failed");
+            }
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest(properties = "x.txns.outbox.polling=true")
+@Import({FooOutbox.class, FooOutboxPoller.class, FooOutboxTrigger.class,
+        AsyncConfiguration.class, MetricsConfiguration.class,
+        LoggingConfiguration.class, OutboxTriggerTest.Received.class})
+// @Transactional <-- Important NOT to make test transactional
+class OutboxTriggerTest {
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooOutbox outbox;
+    @Autowired
+    private Received received;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactions;
+
+    @AfterEach
+    @BeforeEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM FOO_OUTBOX");
+        foos.deleteAll();
+        received.threads.clear();
+        received.recorded.clear();
+    }
+
+    @Test
+    void shouldDispatchOnExecutorAfterCommit()
+            throws InterruptedException {
+        new TransactionTemplate(transactions).execute(status -> {
+            outbox.record(foos.save(new FooRecord(null, "FOO", 1)));
+            assertThat(received.threads).isEmpty();
+            return null;
+        });
+
+        assertThat(received.threads.poll(5L, SECONDS))
+                .startsWith("txns-async-");
+    }
+
+    @Test
+    void shouldTriggerOncePerTransaction() {
+        new TransactionTemplate(transactions).execute(status -> {
+            outbox.record(foos.save(new FooRecord(null, "FOO-1", 1)));
+            outbox.record(foos.save(new FooRecord(null, "FOO-2", 2)));
+            return null;
+        });
+        new TransactionTemplate(transactions).execute(status -> {
+            outbox.record(foos.save(new FooRecord(null, "FOO-3", 3)));
+            return null;
+        });
+
+        assertThat(received.recorded).hasSize(2);
+    }
+
+    static class Received {
+        final BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        final List<FooOutbox.Recorded> recorded
+                = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void receive(final FooEvent event) {
+            threads.add(currentThread().getName());
+        }
+
+        @EventListener
+        public void recorded(final FooOutbox.Recorded event) {
+            recorded.add(event);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static java.util.stream.StreamSupport.stream;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Import(FooUpdater.class)
+// @Transactional <-- Important NOT to make test transactional
+class SkipLockedTest {
+    private static final int ROWS = 200;
+    private static final int BATCH_SIZE = 5;
+    private static final int VALUE = 17;
+
+    /** Stands in for per-row work, such as calling another service. */
+    private static final Consumer<FooRecord> WORK = foo -> {
+        try {
+            MILLISECONDS.sleep(5L);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    };
+
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooUpdater updater;
+
+    @AfterEach
+    @BeforeEach
+    void cleanUp() {
+        foos.deleteAll();
+    }
+
+    @Test
+    void shouldClaimDistinctRows()
+            throws Exception {
+        insertRows();
+
+        final var claimed = drain(4);
+
+        assertThat(claimed.stream().flatMap(List::stream))
+                .hasSize(ROWS)
+                .doesNotHaveDuplicates();
+        assertThat(stream(foos.findAll().spliterator(), false)
+                .map(FooRecord::getValue))
+                .hasSize(ROWS)
+                .containsOnly(VALUE + 1);
+    }
+
+    @Test
+    void shouldPassOverClaimedRows()
+            throws Exception {
+        insertRows();
+        final var claimed = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var threads = newFixedThreadPool(2);
+
+        final var holding = new ArrayList<Long>();
+        final var held = threads.submit(() -> updater.updateClaimed(
+                VALUE, BATCH_SIZE, foo -> {
+                    holding.add(foo.getId());
+                    claimed.countDown();
+                    await(release);
+                }));
+        assertThat(claimed.await(5L, SECONDS)).isTrue();
+
+        // Would block on the held rows without SKIP LOCKED
+        final var passing = new ArrayList<Long>();
+        assertThat(threads.submit(() -> updater.updateClaimed(
+                VALUE, BATCH_SIZE, foo -> passing.add(foo.getId())))
+                .get(5L, SECONDS))
+                .isEqualTo(BATCH_SIZE);
+        release.countDown();
+        assertThat(held.get()).isEqualTo(BATCH_SIZE);
+        threads.shutdown();
+
+        assertThat(passing).doesNotContainAnyElementsOf(holding);
+    }
+
+    /** Drains the queue of rows across {@code workers}, by worker. */
+    private List<List<Long>> drain(final int workers)
+            throws ExecutionException, InterruptedException {
+        final var threads = newFixedThreadPool(workers);
+        final var tasks = new ArrayList<Callable<List<Long>>>();
+        for (int i = 0; i < workers; ++i)
+            tasks.add(() -> {
+                final var claimed = new ArrayList<Long>();
+                while (0 < updater.updateClaimed(VALUE, BATCH_SIZE,
+                        WORK.andThen(foo -> claimed.add(foo.getId()))))
+                    continue;
+                return claimed;
+            });
+
+        final var claimed = new ArrayList<List<Long>>(workers);
+        for (final Future<List<Long>> done : threads.invokeAll(tasks))
+            claimed.add(done.get());
+        threads.shutdown();
+        return claimed;
+    }
+
+    private void insertRows() {
+        foos.saveAll(range(0, ROWS)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, VALUE))
+                .collect(toList()));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5L, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Transactional
+class StreamingTest {
+    private static final int ROWS = 10_000;
+
+    @Autowired
+    private FooRepository foos;
+
+    private void insertRows() {
+        foos.insertAll(range(0, ROWS)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, i))
+                .collect(toList()));
+    }
+
+    @Test
+    void shouldStreamThroughCursor() {
+        insertRows();
+
+        try (final var all = foos.streamAll(100)) {
+            assertThat(all.mapToLong(FooRecord::getValue).sum())
+                    .isEqualTo(ROWS * (ROWS - 1L) / 2);
+        }
+    }
+
+    @Test
+    void shouldPageByKeyset() {
+        insertRows();
+        final var pageSizes = new ArrayList<Integer>();
+        final var ids = new ArrayList<Long>();
+
+        final var count = foos.forEachPage(3_000, page -> {
+            pageSizes.add(page.size());
+            page.forEach(foo -> ids.add(foo.getId()));
+        });
+
+        assertThat(count).isEqualTo(ROWS);
+        assertThat(pageSizes).containsExactly(3_000, 3_000, 3_000, 1_000);
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    @Transactional(propagation = NOT_SUPPORTED)
+    void shouldRequireTransactionToStream() {
+        assertThatThrownBy(() -> foos.streamAll(100))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,203 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import x.txns.ContentionBenchmark.Strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+import static org.slf4j.LoggerFactory.getLogger;
+import static x.txns.ContentionBenchmark.Strategy.OPTIMISTIC;
+
+/**
+ * Compares the strategies of {@link FooUpdater} under contention, with
+ * {@link ContentionBenchmark}.  By default many threads increment one hot
+ * row; results are logged as a table, and to explore pass comma-separated
+ * system properties:
+ * <pre>
+ * ./gradlew test --tests UpdateStrategiesTest \
+ *     -Dx.txns.benchmark.threads=8,64 \
+ *     -Dx.txns.benchmark.rows=1000 \
+ *     -Dx.txns.benchmark.skew=0,1.2 \
+ *     -Dx.txns.benchmark.rows-per-transaction=1,4 \
+ *     -Dx.txns.benchmark.operations-per-thread=100
+ * </pre>
+ */
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Import(FooUpdater.class)
+// @Transactional <-- Important NOT to make test transactional
+class UpdateStrategiesTest {
+    private static final Logger logger
+            = getLogger(UpdateStrategiesTest.class);
+
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private FooUpdater updater;
+    @Autowired
+    private PlatformTransactionManager transactions;
+
+    @BeforeAll
+    static void printHeader() {
+        logger.info(ContentionBenchmark.Result.header());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        foos.deleteAll();
+    }
+
+    static Stream<Arguments> benchmarks() {
+        final var benchmarks = Stream.<Arguments>builder();
+        for (final var threads : property("threads", "2,8,32"))
+            for (final var rows : property("rows", "1"))
+                for (final var skew : property("skew", "0"))
+                    for (final var perTransaction : property(
+                            "rows-per-transaction", "1"))
+                        for (final var strategy : Strategy.values())
+                            benchmarks.add(arguments(strategy,
+                                    (int) threads, (int) rows, skew,
+                                    (int) perTransaction));
+        return benchmarks.build();
+    }
+
+    @ParameterizedTest(
+            name = "{0} with {1} threads, {2} rows, skew {3}, {4} per tx")
+    @MethodSource("benchmarks")
+    void shouldNotLoseIncrements(final Strategy strategy, final int threads,
+            final int rows, final double skew, final int rowsPerTransaction)
+            throws Exception {
+        final var operations = (int) property(
+                "operations-per-thread", "10")[0];
+        final var result = benchmark()
+                .threads(threads)
+                .rows(rows)
+                .skew(skew)
+                .rowsPerTransaction(rowsPerTransaction)
+                .operationsPerThread(operations)
+                .run(strategy);
+
+        logger.info("{}", result);
+
+        assertThat(result.committed + result.gaveUp + result.deadlocks)
+                .isEqualTo(threads * operations);
+        // No lost updates, whichever the strategy
+        assertThat(result.lost).isZero();
+        if (OPTIMISTIC != strategy)
+            assertThat(result.gaveUp).isZero();
+    }
+
+    @Test
+    void shouldClassifyDeadlocks()
+            throws Exception {
+        final var ids = foos.insertAll(List.of(
+                new FooRecord(null, "FOO-0", 0),
+                new FooRecord(null, "FOO-1", 0)));
+        final var first = ids.get(0).getId();
+        final var second = ids.get(1).getId();
+        final var bothLockedOne = new CountDownLatch(2);
+        final var threads = newFixedThreadPool(2);
+
+        // Opposite orders, each holding its first lock until both do
+        final var outcomes = threads.invokeAll(List.of(
+                () -> lockInOrder(first, second, bothLockedOne),
+                () -> lockInOrder(second, first, bothLockedOne)));
+        threads.shutdown();
+
+        final var failures = new ArrayList<Throwable>();
+        for (final var outcome : outcomes)
+            try {
+                outcome.get();
+            } catch (final ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        // Postgres aborts one, and the benchmark counts it as a deadlock
+        assertThat(failures).hasSize(1);
+        assertThat(ContentionBenchmark.causedBy(failures.get(0),
+                DeadlockLoserDataAccessException.class)).isTrue();
+        assertThat(foos.findById(first).orElseThrow().getValue()
+                + foos.findById(second).orElseThrow().getValue())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldPickDistinctRowsPerTransaction()
+            throws Exception {
+        // Skewed, so repeats would be common if not redrawn
+        final var result = benchmark()
+                .threads(2)
+                .rows(2)
+                .skew(2.0)
+                .rowsPerTransaction(2)
+                .run(Strategy.SET);
+
+        assertThat(foos.findByKey("FOO-0").orElseThrow().getValue())
+                .isEqualTo(result.committed);
+        assertThat(foos.findByKey("FOO-1").orElseThrow().getValue())
+                .isEqualTo(result.committed);
+    }
+
+    @Test
+    void shouldSkewTowardsFirstRows()
+            throws Exception {
+        benchmark()
+                .threads(2)
+                .rows(100)
+                .skew(2.0)
+                .operationsPerThread(100)
+                .run(Strategy.SET);
+
+        // Zipf with exponent 2: the first row takes 6 / pi^2, about 61%
+        assertThat(foos.findByKey("FOO-0").orElseThrow().getValue())
+                .isBetween(100, 140);
+    }
+
+    private Void lockInOrder(final long first, final long second,
+            final CountDownLatch bothLockedOne) {
+        return new TransactionTemplate(transactions).execute(status -> {
+            updater.incrementWithLock(first);
+            bothLockedOne.countDown();
+            try {
+                bothLockedOne.await(5L, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updater.incrementWithLock(second);
+            return null;
+        });
+    }
+
+    private ContentionBenchmark benchmark() {
+        return new ContentionBenchmark(foos, updater, transactions);
+    }
+
+    private static double[] property(final String name,
+            final String defaults) {
+        return Arrays.stream(System.getProperty(
+                "x.txns.benchmark." + name, defaults).split(","))
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+    }
+}
@@ -0,0 +1,111 @@
+package x.txns;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.relational.core.conversion.DbActionExecutionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_NESTED;
+import static x.txns.FooBatchRepository.OnConflict.NOTHING;
+import static x.txns.FooBatchRepository.OnConflict.UPDATE;
+
+@AutoConfigureEmbeddedDatabase
+@DataJdbcTest
+@Transactional
+class UpsertTest {
+    private static final int ROWS = 2_000;
+
+    @Autowired
+    private FooRepository foos;
+    @Autowired
+    private PlatformTransactionManager transactions;
+
+    @Test
+    void shouldUpdateOnConflict() {
+        foos.insertAll(batch(0, ROWS / 2, 1));
+
+        final var upserted = foos.upsertAll(batch(0, ROWS, 2), UPDATE);
+
+        assertThat(upserted)
+                .isEqualTo(new FooBatchRepository.Upserted(
+                        ROWS / 2, ROWS / 2));
+        assertThat(foos.count()).isEqualTo(ROWS);
+        assertThat(foos.findByKey("FOO-0").orElseThrow().getValue())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldDoNothingOnConflict() {
+        final var existing = foos.insertAll(batch(0, ROWS / 2, 1));
+        final var batch = batch(0, ROWS, 2);
+
+        final var upserted = foos.upsertAll(batch, NOTHING);
+
+        assertThat(upserted)
+                .isEqualTo(new FooBatchRepository.Upserted(
+                        ROWS / 2, ROWS / 2));
+        assertThat(foos.findByKey("FOO-0").orElseThrow().getValue())
+                .isEqualTo(1);
+        // Only new rows get ids
+        assertThat(batch.subList(0, ROWS / 2))
+                .extracting(FooRecord::getId)
+                .containsOnlyNulls();
+        assertThat(foos.findById(batch.get(ROWS - 1).getId()))
+                .contains(batch.get(ROWS - 1));
+        assertThat(existing.get(0).getId())
+                .isEqualTo(foos.findByKey("FOO-0").orElseThrow().getId());
+    }
+
+    @Test
+    void shouldRejectDuplicateKeys() {
+        assertThatThrownBy(() -> foos.upsertAll(List.of(
+                new FooRecord(null, "FOO", 1),
+                new FooRecord(null, "FOO", 2)), UPDATE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldAgreeWithSavepoints() {
+        // Half of each range conflicts
+        foos.insertAll(batch(0, ROWS / 2, 1));
+        foos.insertAll(batch(ROWS, ROWS + ROWS / 2, 1));
+
+        final var nested = new TransactionTemplate(transactions);
+        nested.setPropagationBehavior(PROPAGATION_NESTED);
+        var conflicted = 0;
+        for (final var foo : batch(0, ROWS, 2))
+            try {
+                nested.execute(status -> foos.save(foo));
+            } catch (final DbActionExecutionException e) {
+                ++conflicted;
+            }
+
+        final var upserted = foos.upsertAll(batch(ROWS, 2 * ROWS, 2), NOTHING);
+
+        assertThat(conflicted).isEqualTo(ROWS / 2);
+        assertThat(upserted)
+                .isEqualTo(new FooBatchRepository.Upserted(
+                        ROWS - conflicted, conflicted));
+        assertThat(foos.count()).isEqualTo(2 * ROWS);
+        assertThat(foos.findByKey("FOO-" + ROWS).orElseThrow().getValue())
+                .isEqualTo(foos.findByKey("FOO-0").orElseThrow().getValue())
+                .isEqualTo(1);
+    }
+
+    private static List<FooRecord> batch(final int from, final int to,
+            final int value) {
+        return range(from, to)
+                .mapToObj(i -> new FooRecord(null, "FOO-" + i, value))
+                .collect(toList());
+    }
+}